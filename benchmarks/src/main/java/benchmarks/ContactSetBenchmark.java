@@ -0,0 +1,145 @@
+package benchmarks;
+
+import Collections.Contact;
+import Collections.ContactDirectory;
+import Collections.OffHeapContactSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Contact in a HashSet and a LinkedHashSet (UsingSets.hashSet() / linkedHashSet()): build
+* the set, then look every contact up again. Ages are 18 to 80 and names are 8 to 12
+* letters long, so the hashCode() of Contact only has a few hundred distinct values.
+* ContactDirectory (full name hash) is the comparison, and OffHeapContactSet (same key,
+* flat off-heap table) shows the cost of keeping nothing on the heap.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactSetBenchmark {
+
+    @Param({"1000", "20000"})
+    int size;
+
+    Contact[] contacts;
+    Contact[] lookups;
+    Set<Contact> hashSet;
+    Set<Contact> linkedHashSet;
+    ContactDirectory directory;
+    OffHeapContactSet offHeapSet;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        contacts = new Contact[size];
+        lookups = new Contact[size];
+        for(int i = 0; i < size; i++) {
+            char[] name = new char[8 + random.nextInt(5)];
+            for(int j = 0; j < name.length; j++) {
+                name[j] = (char) ('a' + random.nextInt(26));
+            }
+            int age = 18 + random.nextInt(63);
+            contacts[i] = new Contact(age, new String(name));
+            lookups[i] = new Contact(age, new String(name)); // equal, not the same instance
+        }
+        hashSet = build(new HashSet<>());
+        linkedHashSet = build(new LinkedHashSet<>());
+        directory = directoryAdd();
+        offHeapSet = offHeapAdd();
+    }
+
+    private Set<Contact> build(Set<Contact> set) {
+        for(Contact contact : contacts) {
+            set.add(contact);
+        }
+        return set;
+    }
+
+    private int lookUp(Set<Contact> set) {
+        int found = 0;
+        for(Contact contact : lookups) {
+            if(set.contains(contact)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public Set<Contact> hashSetAdd() {
+        return build(new HashSet<>());
+    }
+
+    @Benchmark
+    public Set<Contact> linkedHashSetAdd() {
+        return build(new LinkedHashSet<>());
+    }
+
+    @Benchmark
+    public int hashSetContains() {
+        return lookUp(hashSet);
+    }
+
+    @Benchmark
+    public int linkedHashSetContains() {
+        return lookUp(linkedHashSet);
+    }
+
+    @Benchmark
+    public ContactDirectory directoryAdd() {
+        ContactDirectory newDirectory = new ContactDirectory();
+        for(Contact contact : contacts) {
+            newDirectory.add(contact);
+        }
+        return newDirectory;
+    }
+
+    @Benchmark
+    public int directoryContains() {
+        int found = 0;
+        for(Contact contact : lookups) {
+            if(directory.contains(contact)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public OffHeapContactSet offHeapAdd() {
+        OffHeapContactSet newSet = new OffHeapContactSet();
+        for(Contact contact : contacts) {
+            newSet.add(contact);
+        }
+        return newSet;
+    }
+
+    @Benchmark
+    public int offHeapContains() {
+        int found = 0;
+        for(Contact contact : lookups) {
+            if(offHeapSet.contains(contact)) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
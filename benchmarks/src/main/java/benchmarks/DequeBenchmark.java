@@ -0,0 +1,126 @@
+package benchmarks;
+
+import Collections.UnrolledDeque;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+* The operations of UsingLists.linkedList() on LinkedList, UnrolledDeque and ArrayDeque:
+*   - bothEnds*: n addFirst/addLast, then everything removed from alternating ends.
+*   - scan*: summing a deque of n elements that was filled once (pointer chasing against
+*     walking arrays).
+*   - removeObject*: n / 100 remove(Object) of values spread over the deque, on a fresh copy.
+* The gc profiler (see BenchmarkRunner) shows the allocation per element.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DequeBenchmark {
+
+    @Param({"1000", "100000"})
+    int size;
+
+    LinkedList<Integer> linkedList;
+    UnrolledDeque<Integer> unrolled;
+    ArrayDeque<Integer> arrayDeque;
+
+    @Setup
+    public void setUp() {
+        linkedList = fill(new LinkedList<>());
+        unrolled = fill(new UnrolledDeque<>());
+        arrayDeque = fill(new ArrayDeque<>());
+    }
+
+    private <D extends Deque<Integer>> D fill(D deque) {
+        for(int i = 0; i < size; i++) {
+            if((i & 1) == 0) {
+                deque.addLast(i);
+            } else {
+                deque.addFirst(i);
+            }
+        }
+        return deque;
+    }
+
+    private int bothEnds(Supplier<Deque<Integer>> factory) {
+        Deque<Integer> deque = fill(factory.get());
+        int sum = 0;
+        while(!deque.isEmpty()) {
+            sum += (sum & 1) == 0 ? deque.removeFirst() : deque.removeLast();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int bothEndsLinkedList() {
+        return bothEnds(LinkedList::new);
+    }
+
+    @Benchmark
+    public int bothEndsUnrolled() {
+        return bothEnds(UnrolledDeque::new);
+    }
+
+    @Benchmark
+    public int bothEndsArrayDeque() {
+        return bothEnds(ArrayDeque::new);
+    }
+
+    private static int scan(Iterable<Integer> deque) {
+        int sum = 0;
+        for(Integer i : deque) {
+            sum += i;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int scanLinkedList() {
+        return scan(linkedList);
+    }
+
+    @Benchmark
+    public int scanUnrolled() {
+        return scan(unrolled);
+    }
+
+    @Benchmark
+    public int scanArrayDeque() {
+        return scan(arrayDeque);
+    }
+
+    private int removeObjects(Deque<Integer> deque) {
+        for(int i = 0; i < size; i += 100) {
+            deque.remove(i);
+        }
+        return deque.size();
+    }
+
+    @Benchmark
+    public int removeObjectLinkedList() {
+        return removeObjects(new LinkedList<>(linkedList));
+    }
+
+    @Benchmark
+    public int removeObjectUnrolled() {
+        return removeObjects(new UnrolledDeque<>(unrolled));
+    }
+}
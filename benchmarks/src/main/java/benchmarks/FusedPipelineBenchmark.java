@@ -0,0 +1,126 @@
+package benchmarks;
+
+import lambdas.FusedPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/*
+* A chain of 12 maps followed by 4 filters over a list of Integers, summing what passes:
+*   - composed: the maps joined with Function.andThen, the filters with Predicate.and.
+*   - fused: the same stages in a FusedPipeline.
+* Before measuring, setUp() runs a few other andThen()/and() chains so that the call sites
+* inside andThen()/and() have seen many lambdas, as they have in an application that
+* composes functions in several places.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FusedPipelineBenchmark {
+
+    @Param({"1000", "100000"})
+    int size;
+
+    List<Integer> numbers;
+    Function<Integer, Integer> composedMaps;
+    Predicate<Integer> composedFilters;
+    FusedPipeline<Integer, Integer> fused;
+    long sum;
+
+    @Setup
+    public void setUp() {
+        numbers = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            numbers.add(i);
+        }
+
+        composedMaps = Function.identity();
+        composedFilters = n -> true;
+        FusedPipeline.Builder<Integer, Integer> builder = FusedPipeline.builder();
+        for(int i = 0; i < 12; i++) {
+            Function<Integer, Integer> map = map(i);
+            composedMaps = composedMaps.andThen(map);
+            builder = builder.map(map);
+        }
+        for(int i = 0; i < 4; i++) {
+            Predicate<Integer> filter = filter(i);
+            composedFilters = composedFilters.and(filter);
+            builder = builder.filter(filter);
+        }
+        fused = builder.build();
+
+        pollute();
+    }
+
+    private static Function<Integer, Integer> map(int i) {
+        switch(i % 4) {
+            case 0: return n -> n + i;
+            case 1: return n -> n ^ i;
+            case 2: return n -> n * 3;
+            default: return n -> n >>> 1;
+        }
+    }
+
+    private static Predicate<Integer> filter(int i) {
+        switch(i % 4) {
+            case 0: return n -> (n & 1) == 0;
+            case 1: return n -> n % 3 != 0;
+            case 2: return n -> n > 16;
+            default: return n -> n % 7 != 1;
+        }
+    }
+
+    private void pollute() {
+        List<Function<Integer, Integer>> others = List.of(n -> n - 1, n -> n | 4, n -> -n, n -> n << 2);
+        List<Predicate<Integer>> otherFilters = List.of(n -> n < 5, n -> n != 9, n -> n % 2 == 1, n -> n > -3);
+        for(int round = 0; round < 4; round++) {
+            Function<Integer, Integer> f = others.get(round);
+            Predicate<Integer> p = otherFilters.get(round);
+            for(int i = 0; i < 4; i++) {
+                f = f.andThen(others.get((round + i) % 4));
+                p = p.and(otherFilters.get((round + i) % 4));
+            }
+            for(int i = 0; i < 20_000; i++) {
+                if(p.test(i)) {
+                    sum += f.apply(i);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public long composed() {
+        long total = 0;
+        for(Integer n : numbers) {
+            Integer mapped = composedMaps.apply(n);
+            if(composedFilters.test(mapped)) {
+                total += mapped;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long fused() {
+        sum = 0;
+        fused.forEach(numbers, n -> sum += n);
+        return sum;
+    }
+}
@@ -0,0 +1,132 @@
+package benchmarks;
+
+import Collections.CompressedIntSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/*
+* TreeSet<Integer> against CompressedIntSet, for sets of IDs spread over 10 times their
+* number (so about 1 in 10 ints is in the set):
+*   - contains*: 1000 lookups, half of them hits.
+*   - ceiling*: 1000 ceiling() calls.
+*   - range*: sum of the elements in a range of 1% of the IDs.
+*   - and*: the intersection with a second set like the first one. TreeSet copies and
+*     retainAll()'s, CompressedIntSet ANDs container by container.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntSetBenchmark {
+
+    @Param({"10000", "1000000"})
+    int size;
+
+    TreeSet<Integer> tree;
+    TreeSet<Integer> otherTree;
+    CompressedIntSet compressed;
+    CompressedIntSet otherCompressed;
+    int[] probes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        tree = new TreeSet<>();
+        otherTree = new TreeSet<>();
+        compressed = new CompressedIntSet();
+        otherCompressed = new CompressedIntSet();
+        for(int i = 0; i < size; i++) {
+            int id = random.nextInt(size * 10);
+            tree.add(id);
+            compressed.add(id);
+            id = random.nextInt(size * 10);
+            otherTree.add(id);
+            otherCompressed.add(id);
+        }
+        probes = new int[1000];
+        for(int i = 0; i < probes.length; i++) {
+            probes[i] = i % 2 == 0 ? compressed.select(random.nextInt(compressed.size())) : random.nextInt(size * 10);
+        }
+    }
+
+    @Benchmark
+    public int containsTreeSet() {
+        int hits = 0;
+        for(int probe : probes) {
+            hits += tree.contains(probe) ? 1 : 0;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int containsCompressed() {
+        int hits = 0;
+        for(int probe : probes) {
+            hits += compressed.contains(probe) ? 1 : 0;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public long ceilingTreeSet() {
+        long sum = 0;
+        for(int probe : probes) {
+            Integer ceiling = tree.ceiling(probe);
+            sum += ceiling == null ? 0 : ceiling;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long ceilingCompressed() {
+        long sum = 0;
+        for(int probe : probes) {
+            long ceiling = compressed.ceiling(probe);
+            sum += ceiling == CompressedIntSet.NONE ? 0 : ceiling;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long rangeTreeSet() {
+        long sum = 0;
+        for(int id : tree.subSet(size * 5, true, size * 5 + size / 10, true)) {
+            sum += id;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long rangeCompressed() {
+        long[] sum = new long[1];
+        compressed.forEachInRange(size * 5, size * 5 + size / 10, id -> sum[0] += id);
+        return sum[0];
+    }
+
+    @Benchmark
+    public int andTreeSet() {
+        TreeSet<Integer> result = new TreeSet<>(tree);
+        result.retainAll(otherTree);
+        return result.size();
+    }
+
+    @Benchmark
+    public long andCompressed() {
+        return compressed.and(otherCompressed).cardinality();
+    }
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import Collections.TieredList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+* The operations of UsingLists.arrayList() on ArrayList and TieredList, per operation:
+*   - insertRemove*: add(1, x) then remove(0), so the size stays n. ArrayList moves the
+*     whole tail twice; TieredList O(sqrt(n)). TieredList should win from a few thousand
+*     elements on.
+*   - removeObject*: remove(Object) of an element in the middle, then add it back at the
+*     end. The search is O(n) for both, the removal is where they differ.
+*   - get*: n / 1000 random-ish get()'s. ArrayList should stay ahead.
+*   - forEach*: sum of all the elements. ArrayList should stay ahead, or close.
+*   - append*: add() at the end then remove(size - 1). About the same.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListBenchmark {
+
+    @Param({"1000", "1000000"})
+    int size;
+
+    @Param({"ArrayList", "TieredList"})
+    String type;
+
+    List<Integer> list;
+    Integer middle;
+
+    @Setup
+    public void setUp() {
+        list = type.equals("ArrayList") ? new ArrayList<>() : new TieredList<>();
+        for(int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        middle = size / 2;
+    }
+
+    @Benchmark
+    public Integer insertRemove() {
+        list.add(1, -1);
+        return list.remove(0);
+    }
+
+    @Benchmark
+    public boolean removeObject() {
+        boolean removed = list.remove(middle);
+        list.add(middle);
+        return removed;
+    }
+
+    @Benchmark
+    public long get() {
+        long sum = 0;
+        for(int i = 0, step = 999_983 % size; i < 1000; i++) {
+            sum += list.get((int) ((long) i * step % size));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long forEach() {
+        long[] sum = new long[1];
+        list.forEach(i -> sum[0] += i);
+        return sum[0];
+    }
+
+    @Benchmark
+    public Integer append() {
+        list.add(-1);
+        return list.remove(list.size() - 1);
+    }
+}
@@ -0,0 +1,96 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import streams.Cat;
+import streams.Snapshot;
+import streams.Streams;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/*
+* Streams.loadCats() against the other ways of reading the "name/color" format, for files
+* of different sizes (written to a temp folder once per trial).
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LoadCatsBenchmark {
+
+    private static final String[] COLORS = {"Black", "White", "Ginger", "Grey", "Tabby", "Calico"};
+
+    @Param({"10000", "1000000", "5000000"})
+    int lines;
+
+    Path folder;
+    Path cats;
+    Path snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("cats");
+        cats = folder.resolve("Cats.txt");
+        snapshot = folder.resolve("Cats.snapshot");
+
+        Random random = new Random(42);
+        try(BufferedWriter writer = Files.newBufferedWriter(cats)) {
+            for(int i = 0; i < lines; i++) {
+                writer.write("Cat" + random.nextInt(1_000_000) + "/" + COLORS[random.nextInt(COLORS.length)]);
+                writer.newLine();
+            }
+        }
+        Streams.loadCats(cats.toString(), snapshot.toString()); // writes the snapshot
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(cats);
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(folder);
+    }
+
+    @Benchmark
+    public List<Cat> loadCats() {
+        return Streams.loadCats(cats.toString());
+    }
+
+    @Benchmark
+    public List<Cat> loadCatsMapped() {
+        return Streams.loadCatsMapped(cats.toString());
+    }
+
+    @Benchmark
+    public long streamCatsParallel() throws IOException {
+        try(Stream<Cat> stream = Streams.streamCats(cats.toString())) {
+            return stream.parallel().count();
+        }
+    }
+
+    @Benchmark
+    public void snapshotReadAll(Blackhole blackhole) throws IOException {
+        for(Cat cat : Snapshot.open(snapshot, Snapshot.CATS).asList()) {
+            blackhole.consume(cat);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import lambdas.NumericScreen;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/*
+* A sign screen over random ints: a boxing Predicate<Integer> (like TestPredicate.check),
+* NumericScreen.evaluate() with a non-boxing lambda and the dedicated negatives() loop.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumericScreenBenchmark {
+
+    @Param({"1000", "1000000"})
+    int size;
+
+    int[] values;
+    Predicate<Integer> boxed = i -> i < 0;
+
+    @Setup
+    public void setUp() {
+        values = new Random(42).ints(size, -1000, 1000).toArray();
+    }
+
+    @Benchmark
+    public BitSet boxedPredicate() {
+        BitSet negatives = new BitSet(size);
+        for(int i = 0; i < values.length; i++) {
+            if(boxed.test(values[i])) {
+                negatives.set(i);
+            }
+        }
+        return negatives;
+    }
+
+    @Benchmark
+    public long[] evaluateLambda() {
+        return NumericScreen.evaluate(values, i -> i < 0);
+    }
+
+    @Benchmark
+    public long[] negatives() {
+        return NumericScreen.negatives(values);
+    }
+}
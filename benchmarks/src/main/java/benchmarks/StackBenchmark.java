@@ -0,0 +1,127 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Collections.ArrayStack;
+import Collections.ConcurrentStack;
+import Collections.IntArrayStack;
+import Collections.LifoStack;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+/*
+* The legacy Stack used in UsingLists.stack() (every call synchronized) against ArrayDeque,
+* ArrayStack, IntArrayStack and ConcurrentStack, pushing n elements, peeking and popping
+* them all on one thread.
+*
+* The contended* benchmarks share one stack between 4 threads that each push and pop in
+* turn: the synchronized Stack against ConcurrentStack.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StackBenchmark {
+
+    @Param({"100", "100000"})
+    int size;
+
+    @Benchmark
+    public int legacyStack() {
+        Stack<Integer> stack = new Stack<>();
+        for(int i = 0; i < size; i++) {
+            stack.push(i);
+        }
+        int sum = 0;
+        while(!stack.isEmpty()) {
+            sum += stack.peek();
+            sum += stack.pop();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int arrayDeque() {
+        Deque<Integer> stack = new ArrayDeque<>();
+        for(int i = 0; i < size; i++) {
+            stack.push(i);
+        }
+        int sum = 0;
+        while(!stack.isEmpty()) {
+            sum += stack.peek();
+            sum += stack.pop();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int arrayStack() {
+        return pushPeekPop(new ArrayStack<>());
+    }
+
+    @Benchmark
+    public int concurrentStack() {
+        return pushPeekPop(new ConcurrentStack<>());
+    }
+
+    private int pushPeekPop(LifoStack<Integer> stack) {
+        for(int i = 0; i < size; i++) {
+            stack.push(i);
+        }
+        int sum = 0;
+        while(!stack.isEmpty()) {
+            sum += stack.peek();
+            sum += stack.pop();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int intArrayStack() {
+        IntArrayStack stack = new IntArrayStack();
+        for(int i = 0; i < size; i++) {
+            stack.push(i);
+        }
+        int sum = 0;
+        while(!stack.isEmpty()) {
+            sum += stack.peek();
+            sum += stack.pop();
+        }
+        return sum;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final Stack<Integer> legacy = new Stack<>();
+        final ConcurrentStack<Integer> concurrent = new ConcurrentStack<>();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer contendedLegacyStack(Shared shared) {
+        shared.legacy.push(1);
+        return shared.legacy.pop(); // every thread pops after its own push, so never empty
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer contendedConcurrentStack(Shared shared) {
+        shared.concurrent.push(1);
+        return shared.concurrent.poll();
+    }
+}
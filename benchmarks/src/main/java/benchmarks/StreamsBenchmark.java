@@ -0,0 +1,121 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streams.ConcurrentCollectors;
+import streams.IntObjectMap;
+import streams.PrimitiveCollectors;
+import streams.Rope;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/*
+* The operations shown in Streams.reduce(), collection(), groupBy() and partitioningBy(),
+* on n random words (3 to 12 letters, so lots of duplicate lengths), next to the faster
+* versions from the streams package.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamsBenchmark {
+
+    @Param({"1000", "10000"})
+    int size;
+
+    List<String> words;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        words = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            char[] word = new char[3 + random.nextInt(10)];
+            for(int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(26));
+            }
+            words.add(new String(word));
+        }
+    }
+
+    @Benchmark
+    public String reduceStringConcat() {
+        return words.stream().reduce("", (s, c) -> s + c);
+    }
+
+    @Benchmark
+    public String reduceRope() {
+        return words.stream().map(Rope::of).reduce(Rope.EMPTY, Rope::concat).toString();
+    }
+
+    @Benchmark
+    public String reduceRopeParallel() {
+        return words.parallelStream().collect(Rope.joining());
+    }
+
+    @Benchmark
+    public Map<Integer, String> toMapMerge() {
+        return words.stream().collect(Collectors.toMap(String::length, s -> s, (s1, s2) -> s1 + "," + s2));
+    }
+
+    @Benchmark
+    public Map<Integer, String> toMapMergeParallel() {
+        return words.parallelStream().collect(Collectors.toMap(String::length, s -> s, (s1, s2) -> s1 + "," + s2));
+    }
+
+    @Benchmark
+    public Map<Integer, String> toMapJoining() {
+        return words.stream().collect(ConcurrentCollectors.toMapJoining(String::length, s -> s, ","));
+    }
+
+    @Benchmark
+    public Map<Integer, String> toMapJoiningParallel() {
+        return words.parallelStream().collect(ConcurrentCollectors.toMapJoining(String::length, s -> s, ","));
+    }
+
+    @Benchmark
+    public Map<Integer, List<String>> groupingBy() {
+        return words.stream().collect(Collectors.groupingBy(String::length));
+    }
+
+    @Benchmark
+    public IntObjectMap<List<String>> groupingByInt() {
+        return words.stream().collect(PrimitiveCollectors.groupingByInt(String::length));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> groupingByCounting() {
+        return words.stream().collect(Collectors.groupingBy(String::length, Collectors.counting()));
+    }
+
+    @Benchmark
+    public IntObjectMap<Long> groupingByIntCounting() {
+        return words.stream().collect(PrimitiveCollectors.groupingByInt(String::length, Collectors.counting()));
+    }
+
+    @Benchmark
+    public Map<Boolean, List<String>> partitioningBy() {
+        return words.stream().collect(Collectors.partitioningBy(s -> s.length() > 4));
+    }
+
+    @Benchmark
+    public PrimitiveCollectors.Partition<List<String>> partitioningByTwoSlots() {
+        return words.stream().collect(PrimitiveCollectors.partitioningBy(s -> s.length() > 4));
+    }
+}
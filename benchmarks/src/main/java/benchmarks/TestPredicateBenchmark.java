@@ -0,0 +1,76 @@
+package benchmarks;
+
+import lambdas.TestPredicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/*
+* TestPredicate.filterData() removes about half of a list of names; filterDataBulk() does
+* the same with a bitset and one compaction pass. Every invocation works on a fresh copy,
+* so copyOnly is the baseline to subtract.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestPredicateBenchmark {
+
+    @Param({"1000", "100000"})
+    int size;
+
+    List<String> names;
+    Predicate<String> startsWithMr = s -> s.startsWith("Mr.");
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        names = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            names.add((random.nextBoolean() ? "Mr. " : "Ms. ") + "Bloggs " + i);
+        }
+    }
+
+    @Benchmark
+    public List<String> copyOnly() {
+        return new ArrayList<>(names);
+    }
+
+    @Benchmark
+    public List<String> filterDataArrayList() {
+        List<String> list = new ArrayList<>(names);
+        TestPredicate.filterData(list, startsWithMr);
+        return list;
+    }
+
+    @Benchmark
+    public List<String> filterDataLinkedList() {
+        List<String> list = new LinkedList<>(names);
+        TestPredicate.filterData(list, startsWithMr);
+        return list;
+    }
+
+    @Benchmark
+    public List<String> filterDataBulkArrayList() {
+        List<String> list = new ArrayList<>(names);
+        TestPredicate.filterDataBulk(list, startsWithMr);
+        return list;
+    }
+}
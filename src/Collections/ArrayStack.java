@@ -0,0 +1,144 @@
+package Collections;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.EmptyStackException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+public class ArrayStack<T> implements LifoStack<T>, Iterable<T> {
+
+    /*
+    * A LIFO stack in a growable array, with no locking at all.
+    *
+    * java.util.Stack extends Vector, so every push(), pop() and peek() is synchronized: one
+    * thread still has to take the monitor every time, and Stack also has all of Vector's
+    * List methods to insert in the middle of the stack. This is just the array and a size:
+    * push() writes at the end (doubling the array when full), pop() clears the slot so the
+    * element can be garbage collected.
+    *
+    * Iteration and toString() go from the bottom to the top, like java.util.Stack.
+    * Not thread safe - see ConcurrentStack for that. For int and long values without boxing
+    * see IntArrayStack and LongArrayStack.
+    * */
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] elements;
+    private int size;
+    private int modCount;
+
+    public ArrayStack() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ArrayStack(int initialCapacity) {
+        if(initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity " + initialCapacity);
+        }
+        elements = new Object[Math.max(1, initialCapacity)];
+    }
+
+    @Override
+    public void push(T item) {
+        Objects.requireNonNull(item);
+        if(size == elements.length) {
+            elements = Arrays.copyOf(elements, newCapacity(size));
+        }
+        elements[size++] = item;
+        modCount++;
+    }
+
+    static int newCapacity(int size) {
+        if(size == Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("stack too large");
+        }
+        return (int) Math.min((long) size * 2, Integer.MAX_VALUE - 8);
+    }
+
+    @Override
+    public T pop() {
+        if(size == 0) {
+            throw new EmptyStackException();
+        }
+        return removeTop();
+    }
+
+    @Override
+    public T poll() {
+        return size == 0 ? null : removeTop();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T removeTop() {
+        T top = (T) elements[--size];
+        elements[size] = null;
+        modCount++;
+        return top;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        if(size == 0) {
+            throw new EmptyStackException();
+        }
+        return (T) elements[size - 1];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    /*
+    * Shrinks the array to the number of elements, e.g. after a burst of pushes.
+    * */
+    public void trimToSize() {
+        if(elements.length > size) {
+            elements = Arrays.copyOf(elements, Math.max(1, size));
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private final int expectedModCount = modCount;
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if(modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if(next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return (T) elements[next++];
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOf(elements, size));
+    }
+}
@@ -0,0 +1,1302 @@
+package Collections;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.SortedSet;
+import java.util.function.IntConsumer;
+
+public class CompressedIntSet implements Iterable<Integer> {
+
+    /*
+    * A sorted set of ints in a fraction of the memory of a TreeSet<Integer>, laid out like a
+    * "Roaring bitmap".
+    *
+    * A TreeSet<Integer> costs about 56 bytes per element: an Integer (16) and a red-black
+    * tree node (40). Here an int is split into its high 16 bits (the "key") and its low 16
+    * bits. All the ints with the same key go into one container, and the containers are kept
+    * in a sorted array by key. A container picks whichever of 3 layouts is smallest:
+    *   - array:  the low halves as a sorted char[], 2 bytes per element. Used up to 4096
+    *             elements.
+    *   - bitmap: 65536 bits (8KB), one per possible low half. Used above 4096 elements,
+    *             where it is smaller than the array; at most 8KB / 4096 = 2 bytes per
+    *             element, down to 1 bit for a full container.
+    *   - run:    [start, end] pairs, 4 bytes per run of consecutive values, whatever its
+    *             length. IDs handed out in sequence compress to almost nothing. Runs are
+    *             made by addRange() and set operations, or by runOptimize().
+    *
+    * contains() is a binary search over the keys and one lookup in the container. rank(x)
+    * (how many elements are <= x) and select(j) (the j-th smallest) add up the container
+    * sizes. and(), or() and andNot() work container by container, and a bitmap against a
+    * bitmap is 1024 long operations.
+    *
+    * Order: the containers are ordered by their key as an unsigned number, so the sign bit of
+    * every int is flipped first; that way negative numbers come first, as in
+    * TreeSet<Integer>. asNavigableSet() is a NavigableSet<Integer> view for code that needs
+    * the interface (it boxes, of course).
+    *
+    * Not thread safe.
+    * */
+
+    /*
+    * Returned by ceiling() & co when there is no such element (any int fits in a long).
+    * */
+    public static final long NONE = Long.MIN_VALUE;
+
+    static final int ARRAY_MAX = 4096;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int count; // containers in use
+    private long size;
+
+    public CompressedIntSet() {
+    }
+
+    public static CompressedIntSet of(int... values) {
+        CompressedIntSet set = new CompressedIntSet();
+        for(int value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    private static int key(int value) {
+        return (value ^ Integer.MIN_VALUE) >>> 16;
+    }
+
+    private static int low(int value) {
+        return value & 0xFFFF;
+    }
+
+    private static int value(int key, int low) {
+        return (key << 16 | low) ^ Integer.MIN_VALUE;
+    }
+
+    private int indexOf(int key) {
+        return Arrays.binarySearch(keys, 0, count, (char) key);
+    }
+
+    private void insertContainer(int index, int key, Container container) {
+        if(count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            containers = Arrays.copyOf(containers, count * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        keys[index] = (char) key;
+        containers[index] = container;
+        count++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, count - index - 1);
+        containers[--count] = null;
+    }
+
+    // ===== single elements =====
+
+    public boolean add(int value) {
+        int i = indexOf(key(value));
+        if(i < 0) {
+            insertContainer(-i - 1, key(value), new ArrayContainer().add(low(value)));
+        } else {
+            Container c = containers[i];
+            if(c.contains(low(value))) {
+                return false;
+            }
+            containers[i] = c.add(low(value));
+        }
+        size++;
+        return true;
+    }
+
+    /*
+    * Adds first..last, both included.
+    * */
+    public void addRange(int first, int last) {
+        if(first > last) {
+            throw new IllegalArgumentException(first + " > " + last);
+        }
+        for(int key = key(first); key <= key(last); key++) {
+            int from = key == key(first) ? low(first) : 0;
+            int to = key == key(last) ? low(last) : 0xFFFF;
+            RunContainer range = RunContainer.of(from, to);
+            int i = indexOf(key);
+            if(i < 0) {
+                insertContainer(-i - 1, key, range);
+                size += range.cardinality();
+            } else {
+                size -= containers[i].cardinality();
+                containers[i] = Container.or(containers[i], range);
+                size += containers[i].cardinality();
+            }
+        }
+    }
+
+    public boolean remove(int value) {
+        int i = indexOf(key(value));
+        if(i < 0 || !containers[i].contains(low(value))) {
+            return false;
+        }
+        Container c = containers[i].remove(low(value));
+        if(c.cardinality() == 0) {
+            removeContainer(i);
+        } else {
+            containers[i] = c;
+        }
+        size--;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        int i = indexOf(key(value));
+        return i >= 0 && containers[i].contains(low(value));
+    }
+
+    public long cardinality() {
+        return size;
+    }
+
+    /*
+    * cardinality(), capped at Integer.MAX_VALUE like Collection.size().
+    * */
+    public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        keys = new char[4];
+        containers = new Container[4];
+        count = 0;
+        size = 0;
+    }
+
+    // ===== order =====
+
+    /*
+    * How many elements are <= value.
+    * */
+    public long rank(int value) {
+        int key = key(value);
+        long rank = 0;
+        for(int i = 0; i < count && keys[i] <= key; i++) {
+            rank += keys[i] < key ? containers[i].cardinality() : containers[i].rank(low(value));
+        }
+        return rank;
+    }
+
+    /*
+    * The j-th smallest element, from 0.
+    * */
+    public int select(long j) {
+        if(j < 0 || j >= size) {
+            throw new IndexOutOfBoundsException("index " + j + ", size " + size);
+        }
+        for(int i = 0; ; i++) {
+            int cardinality = containers[i].cardinality();
+            if(j < cardinality) {
+                return value(keys[i], containers[i].select((int) j));
+            }
+            j -= cardinality;
+        }
+    }
+
+    public int first() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return value(keys[0], containers[0].ceiling(0));
+    }
+
+    public int last() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return value(keys[count - 1], containers[count - 1].floor(0xFFFF));
+    }
+
+    /*
+    * The smallest element >= value, or NONE.
+    * */
+    public long ceiling(int value) {
+        int i = indexOf(key(value));
+        if(i >= 0) {
+            int low = containers[i].ceiling(low(value));
+            if(low >= 0) {
+                return value(keys[i], low);
+            }
+            i++;
+        } else {
+            i = -i - 1;
+        }
+        return i < count ? value(keys[i], containers[i].ceiling(0)) : NONE;
+    }
+
+    /*
+    * The largest element <= value, or NONE.
+    * */
+    public long floor(int value) {
+        int i = indexOf(key(value));
+        if(i >= 0) {
+            int low = containers[i].floor(low(value));
+            if(low >= 0) {
+                return value(keys[i], low);
+            }
+            i--;
+        } else {
+            i = -i - 2;
+        }
+        return i >= 0 ? value(keys[i], containers[i].floor(0xFFFF)) : NONE;
+    }
+
+    public long higher(int value) {
+        return value == Integer.MAX_VALUE ? NONE : ceiling(value + 1);
+    }
+
+    public long lower(int value) {
+        return value == Integer.MIN_VALUE ? NONE : floor(value - 1);
+    }
+
+    // ===== iteration =====
+
+    public void forEachInt(IntConsumer action) {
+        for(int i = 0; i < count; i++) {
+            containers[i].forEach(keys[i], action);
+        }
+    }
+
+    /*
+    * The elements from first to last, both included, in order.
+    * */
+    public void forEachInRange(int first, int last, IntConsumer action) {
+        if(first > last) {
+            return;
+        }
+        int i = indexOf(key(first));
+        for(i = i < 0 ? -i - 1 : i; i < count && keys[i] <= key(last); i++) {
+            Container c = containers[i];
+            int from = keys[i] == key(first) ? low(first) : 0;
+            int to = keys[i] == key(last) ? low(last) : 0xFFFF;
+            for(int v = c.ceiling(from); v >= 0 && v <= to; v = v == 0xFFFF ? -1 : c.ceiling(v + 1)) {
+                action.accept(value(keys[i], v));
+            }
+        }
+    }
+
+    /*
+    * In ascending order. The iterator moves from value to value (ceiling), so it keeps
+    * working if the set is changed meanwhile; remove() is supported.
+    * */
+    public PrimitiveIterator.OfInt intIterator() {
+        return new Cursor(Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    public int[] toArray() {
+        if(size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("too many elements for an array: " + size);
+        }
+        int[] values = new int[(int) size];
+        int[] n = {0};
+        forEachInt(v -> values[n[0]++] = v);
+        return values;
+    }
+
+    private final class Cursor implements PrimitiveIterator.OfInt {
+        private final long low; // bounds, inclusive
+        private final long high;
+        private final boolean descending;
+        private long next;
+        private long last = NONE;
+
+        Cursor(long low, long high, boolean descending) {
+            this.low = low;
+            this.high = high;
+            this.descending = descending;
+            this.next = descending ? (high < low ? NONE : floor((int) high)) : (low > high ? NONE : ceiling((int) low));
+            if(next != NONE && (next < low || next > high)) {
+                next = NONE;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != NONE;
+        }
+
+        @Override
+        public int nextInt() {
+            if(next == NONE) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            int current = (int) next;
+            next = descending ? lower(current) : higher(current);
+            if(next != NONE && (next < low || next > high)) {
+                next = NONE;
+            }
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            if(last == NONE) {
+                throw new IllegalStateException();
+            }
+            CompressedIntSet.this.remove((int) last);
+            last = NONE;
+        }
+    }
+
+    // ===== sets =====
+
+    public CompressedIntSet and(CompressedIntSet other) {
+        CompressedIntSet result = new CompressedIntSet();
+        for(int i = 0, j = 0; i < count && j < other.count; ) {
+            if(keys[i] < other.keys[j]) {
+                i++;
+            } else if(keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], Container.and(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public CompressedIntSet or(CompressedIntSet other) {
+        CompressedIntSet result = new CompressedIntSet();
+        int i = 0;
+        int j = 0;
+        while(i < count || j < other.count) {
+            if(j == other.count || (i < count && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if(i == count || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], Container.or(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /*
+    * The elements of this set that are not in the other one.
+    * */
+    public CompressedIntSet andNot(CompressedIntSet other) {
+        CompressedIntSet result = new CompressedIntSet();
+        for(int i = 0, j = 0; i < count; i++) {
+            while(j < other.count && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if(j < other.count && other.keys[j] == keys[i]) {
+                result.append(keys[i], Container.andNot(containers[i], other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /*
+    * Adds a container after all the others; skips empty ones.
+    * */
+    private void append(int key, Container container) {
+        if(container.cardinality() > 0) {
+            insertContainer(count, key, container);
+            size += container.cardinality();
+        }
+    }
+
+    // ===== memory =====
+
+    /*
+    * Turns every container into the smallest of the 3 layouts, runs included. Worth calling
+    * after loading IDs that are mostly consecutive.
+    * */
+    public void runOptimize() {
+        for(int i = 0; i < count; i++) {
+            containers[i] = containers[i].optimize();
+        }
+    }
+
+    /*
+    * About how much memory the containers take (their arrays, not the object headers).
+    */
+    public long sizeInBytes() {
+        long bytes = 16L + keys.length * 2L + containers.length * 4L;
+        for(int i = 0; i < count; i++) {
+            bytes += 16 + containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(!(o instanceof CompressedIntSet)) {
+            return false;
+        }
+        CompressedIntSet other = (CompressedIntSet) o;
+        return size == other.size && andNot(other).isEmpty();
+    }
+
+    @Override
+    public int hashCode() {
+        int[] hash = {0};
+        forEachInt(v -> hash[0] += v); // like Set.hashCode() of the Integers
+        return hash[0];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("[");
+        forEachInt(v -> s.append(s.length() > 1 ? ", " : "").append(v));
+        return s.append(']').toString();
+    }
+
+    // ===== NavigableSet<Integer> =====
+
+    /*
+    * A live NavigableSet<Integer> view; changes go through to this set. Sub-set views
+    * (subSet(), headSet(), tailSet()) only see and accept the elements in their range; a
+    * range wider than the view's own is cut down to it rather than rejected.
+    * */
+    public NavigableSet<Integer> asNavigableSet() {
+        return new View(Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+    }
+
+    private final class View extends AbstractSet<Integer> implements NavigableSet<Integer> {
+        private final long low;  // inclusive, low > high when empty
+        private final long high; // inclusive
+        private final boolean descending;
+
+        View(long low, long high, boolean descending) {
+            this.low = low;
+            this.high = high;
+            this.descending = descending;
+        }
+
+        private boolean inRange(long v) {
+            return v != NONE && v >= low && v <= high;
+        }
+
+        private Integer boxed(long v) {
+            return inRange(v) ? (int) v : null;
+        }
+
+        // in ascending terms, within the range
+        private long ascCeiling(long v) {
+            if(v > high) {
+                return NONE;
+            }
+            long c = CompressedIntSet.this.ceiling((int) Math.max(v, low));
+            return inRange(c) ? c : NONE;
+        }
+
+        private long ascFloor(long v) {
+            if(v < low) {
+                return NONE;
+            }
+            long f = CompressedIntSet.this.floor((int) Math.min(v, high));
+            return inRange(f) ? f : NONE;
+        }
+
+        @Override
+        public int size() {
+            if(low > high) {
+                return 0;
+            }
+            long n = rank((int) high) - (low == Integer.MIN_VALUE ? 0 : rank((int) low - 1));
+            return (int) Math.min(n, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return ascCeiling(low) == NONE;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Integer && inRange((Integer) o) && CompressedIntSet.this.contains((Integer) o);
+        }
+
+        @Override
+        public boolean add(Integer e) {
+            if(!inRange(e)) {
+                throw new IllegalArgumentException(e + " is out of the range of this set");
+            }
+            return CompressedIntSet.this.add(e);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return contains(o) && CompressedIntSet.this.remove((Integer) o);
+        }
+
+        @Override
+        public void clear() {
+            if(low == Integer.MIN_VALUE && high == Integer.MAX_VALUE) {
+                CompressedIntSet.this.clear();
+            } else {
+                super.clear();
+            }
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Cursor(low, high, descending);
+        }
+
+        @Override
+        public Iterator<Integer> descendingIterator() {
+            return new Cursor(low, high, !descending);
+        }
+
+        @Override
+        public Comparator<? super Integer> comparator() {
+            return descending ? Comparator.reverseOrder() : null;
+        }
+
+        @Override
+        public Integer first() {
+            Integer first = boxed(descending ? ascFloor(high) : ascCeiling(low));
+            if(first == null) {
+                throw new NoSuchElementException();
+            }
+            return first;
+        }
+
+        @Override
+        public Integer last() {
+            Integer last = boxed(descending ? ascCeiling(low) : ascFloor(high));
+            if(last == null) {
+                throw new NoSuchElementException();
+            }
+            return last;
+        }
+
+        @Override
+        public Integer lower(Integer e) {
+            return boxed(descending ? ascCeiling((long) e + 1) : ascFloor((long) e - 1));
+        }
+
+        @Override
+        public Integer floor(Integer e) {
+            return boxed(descending ? ascCeiling(e) : ascFloor(e));
+        }
+
+        @Override
+        public Integer ceiling(Integer e) {
+            return boxed(descending ? ascFloor(e) : ascCeiling(e));
+        }
+
+        @Override
+        public Integer higher(Integer e) {
+            return boxed(descending ? ascFloor((long) e - 1) : ascCeiling((long) e + 1));
+        }
+
+        @Override
+        public Integer pollFirst() {
+            Integer first = boxed(descending ? ascFloor(high) : ascCeiling(low));
+            if(first != null) {
+                CompressedIntSet.this.remove(first);
+            }
+            return first;
+        }
+
+        @Override
+        public Integer pollLast() {
+            Integer last = boxed(descending ? ascCeiling(low) : ascFloor(high));
+            if(last != null) {
+                CompressedIntSet.this.remove(last);
+            }
+            return last;
+        }
+
+        @Override
+        public NavigableSet<Integer> descendingSet() {
+            return new View(low, high, !descending);
+        }
+
+        /*
+        * The view of [from, to] in ascending terms, cut down to this view's range.
+        * */
+        private View range(long from, long to) {
+            return new View(Math.max(from, low), Math.min(to, high), descending);
+        }
+
+        @Override
+        public NavigableSet<Integer> subSet(Integer fromElement, boolean fromInclusive, Integer toElement, boolean toInclusive) {
+            long from = fromInclusive ? fromElement : descending ? (long) fromElement - 1 : (long) fromElement + 1;
+            long to = toInclusive ? toElement : descending ? (long) toElement + 1 : (long) toElement - 1;
+            if(descending ? fromElement < toElement : fromElement > toElement) {
+                throw new IllegalArgumentException("fromElement " + fromElement + " is after toElement " + toElement);
+            }
+            return descending ? range(to, from) : range(from, to);
+        }
+
+        @Override
+        public NavigableSet<Integer> headSet(Integer toElement, boolean inclusive) {
+            return descending
+                    ? range(inclusive ? toElement : (long) toElement + 1, high)
+                    : range(low, inclusive ? toElement : (long) toElement - 1);
+        }
+
+        @Override
+        public NavigableSet<Integer> tailSet(Integer fromElement, boolean inclusive) {
+            return descending
+                    ? range(low, inclusive ? fromElement : (long) fromElement - 1)
+                    : range(inclusive ? fromElement : (long) fromElement + 1, high);
+        }
+
+        @Override
+        public SortedSet<Integer> subSet(Integer fromElement, Integer toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<Integer> headSet(Integer toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<Integer> tailSet(Integer fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+
+    // ===== containers =====
+
+    /*
+    * The low 16 bits of the elements with one key, as ints 0..65535. add() and remove()
+    * return the container to use from then on, which is a different one when the layout
+    * changes. add() is only called for values that aren't there yet, remove() for values
+    * that are.
+    * */
+    abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(int v);
+
+        abstract Container add(int v);
+
+        abstract Container remove(int v);
+
+        abstract int rank(int v);
+
+        abstract int select(int j);
+
+        abstract int ceiling(int v); // -1 if none
+
+        abstract int floor(int v);   // -1 if none
+
+        abstract void forEach(int key, IntConsumer action);
+
+        abstract int runCount();
+
+        abstract long sizeInBytes();
+
+        abstract Container copy();
+
+        abstract BitmapContainer toBitmap();
+
+        /*
+        * The smallest layout for these values.
+        * */
+        Container optimize() {
+            int cardinality = cardinality();
+            long runBytes = 4L * runCount();
+            long otherBytes = cardinality <= ARRAY_MAX ? 2L * cardinality : BitmapContainer.BYTES;
+            if(runBytes < otherBytes) {
+                return this instanceof RunContainer ? this : RunContainer.from(this);
+            }
+            if(cardinality <= ARRAY_MAX) {
+                return this instanceof ArrayContainer ? this : ArrayContainer.from(this);
+            }
+            return this instanceof BitmapContainer ? this : toBitmap();
+        }
+
+        static Container and(Container a, Container b) {
+            if(a instanceof BitmapContainer && b instanceof BitmapContainer) {
+                BitmapContainer result = ((BitmapContainer) a).copy();
+                result.and((BitmapContainer) b);
+                return result.cardinality() <= ARRAY_MAX ? ArrayContainer.from(result) : result;
+            }
+            Container small = a.cardinality() <= b.cardinality() ? a : b;
+            Container big = small == a ? b : a;
+            if(small.cardinality() <= ARRAY_MAX) {
+                ArrayContainer result = new ArrayContainer();
+                small.forEach(0, v -> {
+                    if(big.contains(v & 0xFFFF)) {
+                        result.append(v & 0xFFFF);
+                    }
+                });
+                return result;
+            }
+            BitmapContainer result = a.toBitmap();
+            result.and(b.toBitmap());
+            return result.optimize();
+        }
+
+        static Container or(Container a, Container b) {
+            if(a instanceof ArrayContainer && b instanceof ArrayContainer && a.cardinality() + b.cardinality() <= ARRAY_MAX) {
+                return ArrayContainer.merge((ArrayContainer) a, (ArrayContainer) b);
+            }
+            BitmapContainer result = a.toBitmap();
+            if(b instanceof BitmapContainer) {
+                result.or((BitmapContainer) b);
+            } else {
+                b.forEach(0, v -> result.set(v & 0xFFFF));
+            }
+            return result.optimize();
+        }
+
+        static Container andNot(Container a, Container b) {
+            if(a instanceof ArrayContainer) {
+                ArrayContainer result = new ArrayContainer();
+                a.forEach(0, v -> {
+                    if(!b.contains(v & 0xFFFF)) {
+                        result.append(v & 0xFFFF);
+                    }
+                });
+                return result;
+            }
+            BitmapContainer result = a.toBitmap();
+            if(b instanceof BitmapContainer) {
+                result.andNot((BitmapContainer) b);
+            } else {
+                b.forEach(0, v -> result.clear(v & 0xFFFF));
+            }
+            return result.optimize();
+        }
+    }
+
+    static final class ArrayContainer extends Container {
+        private char[] values = new char[4];
+        private int cardinality;
+
+        static ArrayContainer from(Container c) {
+            ArrayContainer array = new ArrayContainer();
+            array.values = new char[Math.max(4, c.cardinality())];
+            c.forEach(0, v -> array.append(v & 0xFFFF));
+            return array;
+        }
+
+        static ArrayContainer merge(ArrayContainer a, ArrayContainer b) {
+            ArrayContainer result = new ArrayContainer();
+            result.values = new char[Math.max(4, a.cardinality + b.cardinality)];
+            int i = 0;
+            int j = 0;
+            while(i < a.cardinality || j < b.cardinality) {
+                if(j == b.cardinality || (i < a.cardinality && a.values[i] < b.values[j])) {
+                    result.append(a.values[i++]);
+                } else if(i == a.cardinality || a.values[i] > b.values[j]) {
+                    result.append(b.values[j++]);
+                } else {
+                    result.append(a.values[i++]);
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        /*
+        * Adds a value larger than all the others.
+        * */
+        void append(int v) {
+            if(cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            values[cardinality++] = (char) v;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int v) {
+            return Arrays.binarySearch(values, 0, cardinality, (char) v) >= 0;
+        }
+
+        @Override
+        Container add(int v) {
+            if(cardinality == ARRAY_MAX) {
+                BitmapContainer bitmap = toBitmap();
+                bitmap.set(v);
+                return bitmap;
+            }
+            int i = -Arrays.binarySearch(values, 0, cardinality, (char) v) - 1;
+            if(cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality + (cardinality >> 1) + 1));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = (char) v;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(int v) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) v);
+            System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        int rank(int v) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) v);
+            return i >= 0 ? i + 1 : -i - 1;
+        }
+
+        @Override
+        int select(int j) {
+            return values[j];
+        }
+
+        @Override
+        int ceiling(int v) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) v);
+            if(i >= 0) {
+                return v;
+            }
+            i = -i - 1;
+            return i < cardinality ? values[i] : -1;
+        }
+
+        @Override
+        int floor(int v) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) v);
+            if(i >= 0) {
+                return v;
+            }
+            i = -i - 2;
+            return i >= 0 ? values[i] : -1;
+        }
+
+        @Override
+        void forEach(int key, IntConsumer action) {
+            for(int i = 0; i < cardinality; i++) {
+                action.accept(value(key, values[i]));
+            }
+        }
+
+        @Override
+        int runCount() {
+            int runs = cardinality == 0 ? 0 : 1;
+            for(int i = 1; i < cardinality; i++) {
+                if(values[i] != values[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            return runs;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + values.length * 2L;
+        }
+
+        @Override
+        ArrayContainer copy() {
+            ArrayContainer copy = new ArrayContainer();
+            copy.values = Arrays.copyOf(values, Math.max(4, cardinality));
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for(int i = 0; i < cardinality; i++) {
+                bitmap.set(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    static final class BitmapContainer extends Container {
+        static final int BYTES = 8192;
+
+        private final long[] words = new long[1024];
+        private int cardinality;
+
+        void set(int v) {
+            long before = words[v >>> 6];
+            words[v >>> 6] = before | 1L << v;
+            if(words[v >>> 6] != before) {
+                cardinality++;
+            }
+        }
+
+        void clear(int v) {
+            long before = words[v >>> 6];
+            words[v >>> 6] = before & ~(1L << v);
+            if(words[v >>> 6] != before) {
+                cardinality--;
+            }
+        }
+
+        void and(BitmapContainer other) {
+            int c = 0;
+            for(int i = 0; i < 1024; i++) {
+                words[i] &= other.words[i];
+                c += Long.bitCount(words[i]);
+            }
+            cardinality = c;
+        }
+
+        void or(BitmapContainer other) {
+            int c = 0;
+            for(int i = 0; i < 1024; i++) {
+                words[i] |= other.words[i];
+                c += Long.bitCount(words[i]);
+            }
+            cardinality = c;
+        }
+
+        void andNot(BitmapContainer other) {
+            int c = 0;
+            for(int i = 0; i < 1024; i++) {
+                words[i] &= ~other.words[i];
+                c += Long.bitCount(words[i]);
+            }
+            cardinality = c;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int v) {
+            return (words[v >>> 6] & 1L << v) != 0;
+        }
+
+        @Override
+        Container add(int v) {
+            set(v);
+            return this;
+        }
+
+        @Override
+        Container remove(int v) {
+            clear(v);
+            return cardinality <= ARRAY_MAX ? ArrayContainer.from(this) : this;
+        }
+
+        @Override
+        int rank(int v) {
+            int rank = 0;
+            int w = v >>> 6;
+            for(int i = 0; i < w; i++) {
+                rank += Long.bitCount(words[i]);
+            }
+            return rank + Long.bitCount(words[w] & -1L >>> (63 - (v & 63)));
+        }
+
+        @Override
+        int select(int j) {
+            for(int i = 0; ; i++) {
+                int bits = Long.bitCount(words[i]);
+                if(j < bits) {
+                    long word = words[i];
+                    for(int k = 0; k < j; k++) {
+                        word &= word - 1; // drop the lowest bit
+                    }
+                    return i * 64 + Long.numberOfTrailingZeros(word);
+                }
+                j -= bits;
+            }
+        }
+
+        @Override
+        int ceiling(int v) {
+            int w = v >>> 6;
+            long word = words[w] & -1L << v;
+            while(word == 0) {
+                if(++w == 1024) {
+                    return -1;
+                }
+                word = words[w];
+            }
+            return w * 64 + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int floor(int v) {
+            int w = v >>> 6;
+            long word = words[w] & -1L >>> (63 - (v & 63));
+            while(word == 0) {
+                if(--w < 0) {
+                    return -1;
+                }
+                word = words[w];
+            }
+            return w * 64 + 63 - Long.numberOfLeadingZeros(word);
+        }
+
+        @Override
+        void forEach(int key, IntConsumer action) {
+            for(int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while(word != 0) {
+                    action.accept(value(key, i * 64 + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        int runCount() {
+            int runs = 0;
+            long previousTop = 0;
+            for(long word : words) {
+                // a run starts at every set bit whose lower neighbour isn't set
+                runs += Long.bitCount(word & ~(word << 1 | previousTop));
+                previousTop = word >>> 63;
+            }
+            return runs;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return BYTES;
+        }
+
+        @Override
+        BitmapContainer copy() {
+            BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, 1024);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return copy();
+        }
+    }
+
+    static final class RunContainer extends Container {
+        private char[] runs = new char[4]; // start, end (inclusive), start, end, ...
+        private int runCount;
+        private int cardinality;
+
+        static RunContainer of(int start, int end) {
+            RunContainer run = new RunContainer();
+            run.runs[0] = (char) start;
+            run.runs[1] = (char) end;
+            run.runCount = 1;
+            run.cardinality = end - start + 1;
+            return run;
+        }
+
+        static RunContainer from(Container c) {
+            RunContainer run = new RunContainer();
+            run.runs = new char[Math.max(4, 2 * c.runCount())];
+            c.forEach(0, value -> {
+                int v = value & 0xFFFF;
+                if(run.runCount > 0 && run.end(run.runCount - 1) == v - 1) {
+                    run.runs[2 * run.runCount - 1] = (char) v;
+                } else {
+                    run.runs[2 * run.runCount] = (char) v;
+                    run.runs[2 * run.runCount + 1] = (char) v;
+                    run.runCount++;
+                }
+                run.cardinality++;
+            });
+            return run;
+        }
+
+        private int start(int i) {
+            return runs[2 * i];
+        }
+
+        private int end(int i) {
+            return runs[2 * i + 1];
+        }
+
+        /*
+        * The last run starting at or before v, or -1.
+        * */
+        private int runAtOrBefore(int v) {
+            int lo = 0;
+            int hi = runCount - 1;
+            while(lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if(start(mid) <= v) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return hi;
+        }
+
+        private void insertRun(int i, int start, int end) {
+            if(2 * runCount + 2 > runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            System.arraycopy(runs, 2 * i, runs, 2 * i + 2, 2 * (runCount - i));
+            runs[2 * i] = (char) start;
+            runs[2 * i + 1] = (char) end;
+            runCount++;
+        }
+
+        private void removeRun(int i) {
+            System.arraycopy(runs, 2 * i + 2, runs, 2 * i, 2 * (runCount - i - 1));
+            runCount--;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int v) {
+            int i = runAtOrBefore(v);
+            return i >= 0 && v <= end(i);
+        }
+
+        @Override
+        Container add(int v) {
+            int i = runAtOrBefore(v);
+            boolean joinsPrevious = i >= 0 && end(i) + 1 == v;
+            boolean joinsNext = i + 1 < runCount && start(i + 1) == v + 1;
+            if(joinsPrevious && joinsNext) {
+                runs[2 * i + 1] = runs[2 * i + 3];
+                removeRun(i + 1);
+            } else if(joinsPrevious) {
+                runs[2 * i + 1] = (char) v;
+            } else if(joinsNext) {
+                runs[2 * i + 2] = (char) v;
+            } else {
+                insertRun(i + 1, v, v);
+            }
+            cardinality++;
+            return tooManyRuns() ? optimize() : this;
+        }
+
+        @Override
+        Container remove(int v) {
+            int i = runAtOrBefore(v);
+            int start = start(i);
+            int end = end(i);
+            if(start == end) {
+                removeRun(i);
+            } else if(v == start) {
+                runs[2 * i] = (char) (v + 1);
+            } else if(v == end) {
+                runs[2 * i + 1] = (char) (v - 1);
+            } else {
+                runs[2 * i + 1] = (char) (v - 1);
+                insertRun(i + 1, v + 1, end);
+            }
+            cardinality--;
+            return tooManyRuns() ? optimize() : this;
+        }
+
+        private boolean tooManyRuns() {
+            return 4L * runCount > Math.min(2L * cardinality, BitmapContainer.BYTES);
+        }
+
+        @Override
+        int rank(int v) {
+            int rank = 0;
+            for(int i = 0; i < runCount && start(i) <= v; i++) {
+                rank += Math.min(v, end(i)) - start(i) + 1;
+            }
+            return rank;
+        }
+
+        @Override
+        int select(int j) {
+            for(int i = 0; ; i++) {
+                int length = end(i) - start(i) + 1;
+                if(j < length) {
+                    return start(i) + j;
+                }
+                j -= length;
+            }
+        }
+
+        @Override
+        int ceiling(int v) {
+            int i = runAtOrBefore(v);
+            if(i >= 0 && v <= end(i)) {
+                return v;
+            }
+            return i + 1 < runCount ? start(i + 1) : -1;
+        }
+
+        @Override
+        int floor(int v) {
+            int i = runAtOrBefore(v);
+            return i < 0 ? -1 : Math.min(v, end(i));
+        }
+
+        @Override
+        void forEach(int key, IntConsumer action) {
+            for(int i = 0; i < runCount; i++) {
+                for(int v = start(i), end = end(i); v <= end; v++) {
+                    action.accept(value(key, v));
+                }
+            }
+        }
+
+        @Override
+        int runCount() {
+            return runCount;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + runs.length * 2L;
+        }
+
+        @Override
+        RunContainer copy() {
+            RunContainer copy = new RunContainer();
+            copy.runs = Arrays.copyOf(runs, Math.max(4, 2 * runCount));
+            copy.runCount = runCount;
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for(int i = 0; i < runCount; i++) {
+                for(int v = start(i), end = end(i); v <= end; v++) {
+                    bitmap.set(v);
+                }
+            }
+            return bitmap;
+        }
+    }
+}
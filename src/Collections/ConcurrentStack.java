@@ -0,0 +1,176 @@
+package Collections;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class ConcurrentStack<T> implements LifoStack<T>, Iterable<T> {
+
+    /*
+    * A LIFO stack for many threads pushing and popping at once, without locks.
+    *
+    * ===== Treiber stack =====
+    * The stack is a linked list and `top` points at its first node. push() makes a node
+    * pointing at the current top and swings `top` to it with one compareAndSet; pop() swings
+    * `top` to the next node. If another thread changed `top` in between, the compareAndSet
+    * fails and the operation is retried. No thread ever waits for another one to release
+    * anything. (The "ABA" problem of this scheme doesn't apply: every push() creates a new
+    * node, and the garbage collector doesn't reuse a node while anyone can still see it.)
+    *
+    * ===== Elimination backoff =====
+    * With many threads, most of those compareAndSet's fail on the one `top` field. But a
+    * push() and a pop() that happen at the same time cancel out: the pop can simply take the
+    * pushed element, without touching the stack. So after a failed compareAndSet:
+    *   - push() puts its node into a random slot of a small array and spins a moment. If a
+    *     pop() took it meanwhile, the push is done; otherwise it takes the node back and
+    *     tries the stack again.
+    *   - pop() looks into a random slot and takes the node it finds there, if any.
+    * Under contention a part of the pairs meets in the array instead of fighting over `top`.
+    *
+    * Every node also knows how many nodes are below it, so size() is O(1) and consistent
+    * with the stack at one moment. Iteration and toString() work on such a snapshot, from the
+    * bottom to the top like ArrayStack.
+    * */
+
+    private static final int SLOTS = Math.max(1, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) / 2);
+    private static final int SPINS = 128;
+
+    private final AtomicReference<Node<T>> top = new AtomicReference<>();
+    private final AtomicReferenceArray<Node<T>> eliminationSlots = new AtomicReferenceArray<>(SLOTS);
+
+    @Override
+    public void push(T item) {
+        Node<T> node = new Node<>(Objects.requireNonNull(item));
+        while(true) {
+            Node<T> current = top.get();
+            node.next = current;
+            node.size = current == null ? 1 : current.size + 1;
+            if(top.compareAndSet(current, node) || handedOver(node)) {
+                return;
+            }
+        }
+    }
+
+    /*
+    * Offers the node to a concurrent pop(); true if one took it.
+    * */
+    private boolean handedOver(Node<T> node) {
+        int slot = ThreadLocalRandom.current().nextInt(SLOTS);
+        if(!eliminationSlots.compareAndSet(slot, null, node)) {
+            return false;
+        }
+        for(int i = 0; i < SPINS; i++) {
+            if(eliminationSlots.get(slot) != node) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+        // nobody came: take it back, unless a pop() took it just now
+        return !eliminationSlots.compareAndSet(slot, node, null);
+    }
+
+    @Override
+    public T pop() {
+        T item = poll();
+        if(item == null) {
+            throw new EmptyStackException();
+        }
+        return item;
+    }
+
+    @Override
+    public T poll() {
+        while(true) {
+            Node<T> current = top.get();
+            if(current == null) {
+                return null;
+            }
+            if(top.compareAndSet(current, current.next)) {
+                return current.item;
+            }
+            int slot = ThreadLocalRandom.current().nextInt(SLOTS);
+            Node<T> offered = eliminationSlots.get(slot);
+            if(offered != null && eliminationSlots.compareAndSet(slot, offered, null)) {
+                return offered.item;
+            }
+        }
+    }
+
+    @Override
+    public T peek() {
+        Node<T> current = top.get();
+        if(current == null) {
+            throw new EmptyStackException();
+        }
+        return current.item;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return top.get() == null;
+    }
+
+    @Override
+    public int size() {
+        Node<T> current = top.get();
+        return current == null ? 0 : current.size;
+    }
+
+    /*
+    * The elements at one moment, from the bottom to the top.
+    * */
+    public Object[] toArray() {
+        Node<T> current = top.get();
+        Object[] items = new Object[current == null ? 0 : current.size];
+        for(int i = items.length - 1; i >= 0; i--, current = current.next) {
+            items[i] = current.item;
+        }
+        return items;
+    }
+
+    /*
+    * Iterates over a snapshot (toArray()); doesn't see later changes and doesn't support
+    * remove().
+    * */
+    @Override
+    public Iterator<T> iterator() {
+        Object[] items = toArray();
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < items.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if(next >= items.length) {
+                    throw new NoSuchElementException();
+                }
+                return (T) items[next++];
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private static final class Node<T> {
+        final T item;
+        Node<T> next; // set before the node is published by a compareAndSet
+        int size;
+
+        Node(T item) {
+            this.item = item;
+        }
+    }
+}
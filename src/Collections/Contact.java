@@ -22,6 +22,14 @@ public class Contact {
         this.name = name;
     }
 
+    public int getAge() {
+        return age;
+    }
+
+    public String getName() {
+        return name;
+    }
+
     @Override
     public boolean equals(Object o) {
         if(o instanceof Contact) {
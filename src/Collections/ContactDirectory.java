@@ -0,0 +1,311 @@
+package Collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+public class ContactDirectory {
+
+    /*
+    * A set of Contact's with 3 ways of looking them up:
+    *   - exact: by name (and age), through a hash table.
+    *   - age range: through a sorted age index.
+    *   - name prefix (autocomplete): through a sorted name index.
+    *
+    * Contact.hashCode() only mixes the age and the LENGTH of the name, so "Alice" and "Brian"
+    * of the same age always land in the same bucket. With real data there are only a few
+    * hundred different hash codes, so a HashSet<Contact> ends up with long chains that have to
+    * be scanned with equals(). This directory hashes the whole name instead and keeps the hash
+    * in the entry ("cached hash"), so a lookup compares ints first and only calls equals()
+    * when the hashes match. bucketStats() shows how the entries are spread over the buckets;
+    * BucketStats.of() does the same for any hash function, e.g. Contact::hashCode, to compare.
+    *
+    * The two sorted indexes are plain arrays kept sorted by age / by name. Rebuilding them
+    * after every add() would be slow, so they are rebuilt lazily by the first range or prefix
+    * query after a change. That suits a directory that is read much more than it is written.
+    *
+    * Not thread safe.
+    * */
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private Entry[] buckets = new Entry[16];
+    private int size;
+
+    private Contact[] byAge;    // null when it needs rebuilding
+    private int[] ages;         // ages[i] == byAge[i].getAge(), for the binary search
+    private Contact[] byName;   // null when it needs rebuilding
+
+    static int hash(String name, int age) {
+        int h = 31 * name.hashCode() + age;
+        return h ^ (h >>> 16);
+    }
+
+    public boolean add(Contact contact) {
+        int hash = hash(contact.getName(), contact.getAge());
+        int index = hash & (buckets.length - 1);
+        for(Entry e = buckets[index]; e != null; e = e.next) {
+            if(e.hash == hash && e.contact.equals(contact)) {
+                return false;
+            }
+        }
+
+        buckets[index] = new Entry(contact, hash, buckets[index]);
+        if(++size > buckets.length * LOAD_FACTOR) {
+            resize();
+        }
+        invalidateIndexes();
+        return true;
+    }
+
+    public boolean addAll(Collection<Contact> contacts) {
+        boolean changed = false;
+        for(Contact contact : contacts) {
+            changed |= add(contact);
+        }
+        return changed;
+    }
+
+    public boolean remove(Contact contact) {
+        int hash = hash(contact.getName(), contact.getAge());
+        int index = hash & (buckets.length - 1);
+        Entry previous = null;
+        for(Entry e = buckets[index]; e != null; previous = e, e = e.next) {
+            if(e.hash == hash && e.contact.equals(contact)) {
+                if(previous == null) {
+                    buckets[index] = e.next;
+                } else {
+                    previous.next = e.next;
+                }
+                size--;
+                invalidateIndexes();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean contains(Contact contact) {
+        return find(contact.getName(), contact.getAge()) != null;
+    }
+
+    public Contact find(String name, int age) {
+        int hash = hash(name, age);
+        for(Entry e = buckets[hash & (buckets.length - 1)]; e != null; e = e.next) {
+            if(e.hash == hash && e.contact.getAge() == age && e.contact.getName().equals(name)) {
+                return e.contact;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+    * Contacts with minAge <= age <= maxAge, youngest first.
+    * */
+    public List<Contact> byAgeRange(int minAge, int maxAge) {
+        if(byAge == null) {
+            byAge = toArray();
+            Arrays.sort(byAge, Comparator.comparingInt(Contact::getAge));
+            ages = new int[size];
+            for(int i = 0; i < size; i++) {
+                ages[i] = byAge[i].getAge();
+            }
+        }
+        if(minAge > maxAge) {
+            return List.of();
+        }
+
+        int from = firstAgeAtLeast(minAge);
+        int to = maxAge == Integer.MAX_VALUE ? size : firstAgeAtLeast(maxAge + 1);
+        return Arrays.asList(Arrays.copyOfRange(byAge, from, to));
+    }
+
+    private int firstAgeAtLeast(int age) {
+        int low = 0;
+        int high = size;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(ages[mid] < age) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /*
+    * Contacts whose name starts with prefix (case sensitive), in name order. All the names
+    * with the same prefix are next to each other in the sorted index, so this is a binary
+    * search for the first one and a scan until the prefix stops matching.
+    * */
+    public List<Contact> byNamePrefix(String prefix) {
+        if(byName == null) {
+            byName = toArray();
+            Arrays.sort(byName, Comparator.comparing(Contact::getName).thenComparingInt(Contact::getAge));
+        }
+
+        int low = 0;
+        int high = size;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(byName[mid].getName().compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        List<Contact> matches = new ArrayList<>();
+        for(int i = low; i < size && byName[i].getName().startsWith(prefix); i++) {
+            matches.add(byName[i]);
+        }
+        return matches;
+    }
+
+    public BucketStats bucketStats() {
+        int[] chainLengths = new int[buckets.length];
+        for(int i = 0; i < buckets.length; i++) {
+            for(Entry e = buckets[i]; e != null; e = e.next) {
+                chainLengths[i]++;
+            }
+        }
+        return new BucketStats(chainLengths, size);
+    }
+
+    private Contact[] toArray() {
+        Contact[] contacts = new Contact[size];
+        int n = 0;
+        for(Entry bucket : buckets) {
+            for(Entry e = bucket; e != null; e = e.next) {
+                contacts[n++] = e.contact;
+            }
+        }
+        return contacts;
+    }
+
+    private void invalidateIndexes() {
+        byAge = null;
+        ages = null;
+        byName = null;
+    }
+
+    private void resize() {
+        Entry[] old = buckets;
+        buckets = new Entry[old.length * 2];
+        int mask = buckets.length - 1;
+        for(Entry bucket : old) {
+            Entry e = bucket;
+            while(e != null) {
+                Entry next = e.next;
+                int index = e.hash & mask; // no need to hash the name again
+                e.next = buckets[index];
+                buckets[index] = e;
+                e = next;
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Contact contact;
+        private final int hash;
+        private Entry next;
+
+        Entry(Contact contact, int hash, Entry next) {
+            this.contact = contact;
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    /*
+    * How the entries of a hash table are spread over its buckets. With a good hash function
+    * and a load factor of 0.75 almost every chain has 0, 1 or 2 entries.
+    * */
+    public static class BucketStats {
+        private final int buckets;
+        private final int entries;
+        private final int usedBuckets;
+        private final int longestChain;
+        private final int[] histogram; // histogram[k] = number of buckets holding k entries
+
+        BucketStats(int[] chainLengths, int entries) {
+            int used = 0;
+            int longest = 0;
+            for(int length : chainLengths) {
+                if(length > 0) {
+                    used++;
+                }
+                longest = Math.max(longest, length);
+            }
+            int[] counts = new int[longest + 1];
+            for(int length : chainLengths) {
+                counts[length]++;
+            }
+
+            this.buckets = chainLengths.length;
+            this.entries = entries;
+            this.usedBuckets = used;
+            this.longestChain = longest;
+            this.histogram = counts;
+        }
+
+        /*
+        * The stats a HashMap-like table with the given number of buckets (a power of 2) would
+        * have with this hash function, e.g. BucketStats.of(contacts, Contact::hashCode, 1024).
+        * */
+        public static BucketStats of(Collection<Contact> contacts, ToIntFunction<Contact> hashFunction, int buckets) {
+            int[] chainLengths = new int[buckets];
+            for(Contact contact : contacts) {
+                int h = hashFunction.applyAsInt(contact);
+                chainLengths[(h ^ (h >>> 16)) & (buckets - 1)]++;
+            }
+            return new BucketStats(chainLengths, contacts.size());
+        }
+
+        public int getBuckets() {
+            return buckets;
+        }
+
+        public int getUsedBuckets() {
+            return usedBuckets;
+        }
+
+        public int getLongestChain() {
+            return longestChain;
+        }
+
+        /*
+        * Average number of entries compared by a successful lookup (1 is perfect).
+        * */
+        public double getAverageProbes() {
+            long probes = 0;
+            for(int length = 1; length < histogram.length; length++) {
+                probes += (long) histogram[length] * length * (length + 1) / 2;
+            }
+            return entries == 0 ? 0 : (double) probes / entries;
+        }
+
+        public int[] getHistogram() {
+            return histogram.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "BucketStats{" +
+                    "buckets=" + buckets +
+                    ", entries=" + entries +
+                    ", usedBuckets=" + usedBuckets +
+                    ", longestChain=" + longestChain +
+                    ", averageProbes=" + String.format("%.2f", getAverageProbes()) +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package Collections;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+public class IntArrayStack {
+
+    /*
+    * ArrayStack for int values, kept in an int[]: no Integer per element.
+    *
+    * Same methods as LifoStack, but pop() and peek() return int, so it can't implement it.
+    * There is no poll(): an empty stack has no int to return, check isEmpty() first. Not
+    * thread safe.
+    * */
+
+    private int[] elements;
+    private int size;
+
+    public IntArrayStack() {
+        this(16);
+    }
+
+    public IntArrayStack(int initialCapacity) {
+        if(initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity " + initialCapacity);
+        }
+        elements = new int[Math.max(1, initialCapacity)];
+    }
+
+    public void push(int value) {
+        if(size == elements.length) {
+            elements = Arrays.copyOf(elements, ArrayStack.newCapacity(size));
+        }
+        elements[size++] = value;
+    }
+
+    public int pop() {
+        if(size == 0) {
+            throw new EmptyStackException();
+        }
+        return elements[--size];
+    }
+
+    public int peek() {
+        if(size == 0) {
+            throw new EmptyStackException();
+        }
+        return elements[size - 1];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /*
+    * The values from the bottom to the top.
+    * */
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,27 @@
+package Collections;
+
+/*
+* The push/pop/peek part of java.util.Stack, without the Vector underneath, so a call site
+* can switch between ArrayStack (one thread) and ConcurrentStack (many threads).
+*
+* pop() and peek() throw EmptyStackException on an empty stack, like java.util.Stack;
+* poll() returns null instead, which is what a consumer racing other consumers needs.
+* null elements are not allowed.
+* */
+public interface LifoStack<T> {
+
+    void push(T item);
+
+    T pop();
+
+    /*
+    * Pops the top, or returns null if the stack is empty.
+    * */
+    T poll();
+
+    T peek();
+
+    boolean isEmpty();
+
+    int size();
+}
@@ -0,0 +1,74 @@
+package Collections;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+public class LongArrayStack {
+
+    /*
+    * ArrayStack for long values, kept in a long[]: no Long per element.
+    *
+    * Same methods as LifoStack, but pop() and peek() return long, so it can't implement it.
+    * There is no poll(): an empty stack has no long to return, check isEmpty() first. Not
+    * thread safe.
+    * */
+
+    private long[] elements;
+    private int size;
+
+    public LongArrayStack() {
+        this(16);
+    }
+
+    public LongArrayStack(int initialCapacity) {
+        if(initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity " + initialCapacity);
+        }
+        elements = new long[Math.max(1, initialCapacity)];
+    }
+
+    public void push(long value) {
+        if(size == elements.length) {
+            elements = Arrays.copyOf(elements, ArrayStack.newCapacity(size));
+        }
+        elements[size++] = value;
+    }
+
+    public long pop() {
+        if(size == 0) {
+            throw new EmptyStackException();
+        }
+        return elements[--size];
+    }
+
+    public long peek() {
+        if(size == 0) {
+            throw new EmptyStackException();
+        }
+        return elements[size - 1];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /*
+    * The values from the bottom to the top.
+    * */
+    public long[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,583 @@
+package Collections;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+public class OffHeapContactSet {
+
+    /*
+    * A set of (age, name) pairs - the key of a Contact - kept outside the Java heap, for
+    * tens of millions of entries.
+    *
+    * A HashSet<Contact> costs 3 objects per entry (the Contact, its String with its byte[],
+    * and a HashMap.Node), about 100 bytes. The garbage collector has to trace all of them
+    * on every full collection, and with tens of millions of entries those pauses get long.
+    * Here there is no object per entry at all:
+    *
+    *   - arena: the records, one after the other, in direct ByteBuffer's of 64MB ("pages").
+    *     A record is [age: int][length: int][name: UTF-8 bytes], padded to 8 bytes. So
+    *     "Alice", 18 takes 16 bytes.
+    *   - table: an open-addressing hash table, also a direct ByteBuffer, of 8-byte slots.
+    *     A slot holds the 32-bit hash of its record next to where the record is in the arena
+    *     (0 = empty slot). Collisions go to the next slot ("linear probing"), so a lookup
+    *     reads neighbouring slots of one array instead of following pointers.
+    *
+    * The hash is computed once, from the age and all the bytes of the name (Contact.hashCode()
+    * only uses the length of the name), and kept in the slot. A lookup compares the hashes
+    * first and only reads the record when they match; growing the table rehashes from the
+    * slots alone, without touching the arena.
+    *
+    * remove() empties the slot and moves the following slots of the same cluster back
+    * ("backward shift"), so there are no tombstones and lookups stay short. The record stays
+    * in the arena as garbage until compact(), which remove() calls by itself once more
+    * than half the arena is garbage.
+    *
+    * contains/add/remove take the age and a CharSequence; the name is encoded into a
+    * scratch buffer that is reused, so none of them allocates (the Contact overloads
+    * are for convenience). forEach() passes a reused Entry that reads the record in place.
+    * stats() reports the load factor, how many probes the lookups need and the bytes per
+    * entry.
+    *
+    * Direct buffers are freed when the garbage collector finds them unreachable (after
+    * clear(), or when the set itself is dropped), not right away; -XX:MaxDirectMemorySize
+    * limits how much there can be. (On a JDK with the final foreign memory API, Java 22 and
+    * up, the pages would be MemorySegment's from an Arena that is closed explicitly; on 17
+    * that API is still incubating.)
+    *
+    * Not thread safe.
+    * */
+
+    static final float LOAD_FACTOR = 0.7f;
+    static final int PAGE_SHIFT = 26; // 64MB pages
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int MAX_SLOTS = 1 << 27; // 1GB of table, just under the limit of a ByteBuffer
+    static final int HEADER = 8;
+
+    private ByteBuffer table;
+    private int mask;
+    private int size;
+
+    private ByteBuffer[] pages = new ByteBuffer[1];
+    private int page;      // the page records are appended to
+    private int position;  // where in that page
+    private long liveBytes;
+    private long garbageBytes;
+
+    private byte[] scratch = new byte[64];
+    private ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch).order(ByteOrder.nativeOrder());
+    private int scratchLength;
+
+    public OffHeapContactSet() {
+        this(16);
+    }
+
+    public OffHeapContactSet(int expectedSize) {
+        table = newTable(slotsFor(expectedSize));
+        mask = table.capacity() / 8 - 1;
+        pages[0] = newPage(4096);
+    }
+
+    static int slotsFor(int entries) {
+        int slots = 16;
+        while(slots * LOAD_FACTOR < entries) {
+            if(slots == MAX_SLOTS) {
+                throw new IllegalStateException("too many entries: " + entries);
+            }
+            slots *= 2;
+        }
+        return slots;
+    }
+
+    private static ByteBuffer newTable(int slots) {
+        return ByteBuffer.allocateDirect(slots * 8).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer newPage(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    // ===== keys =====
+
+    /*
+    * Encodes the name into the scratch buffer as UTF-8 (like String.getBytes(UTF_8):
+    * unpaired surrogates become '?') and returns the hash of the key.
+    * */
+    private int encode(int age, CharSequence name) {
+        int n = 0;
+        for(int i = 0, length = name.length(); i < length; i++) {
+            if(n + 4 > scratch.length) {
+                scratch = Arrays.copyOf(scratch, scratch.length * 2);
+                scratchBuffer = ByteBuffer.wrap(scratch).order(ByteOrder.nativeOrder());
+            }
+            char c = name.charAt(i);
+            if(c < 0x80) {
+                scratch[n++] = (byte) c;
+            } else if(c < 0x800) {
+                scratch[n++] = (byte) (0xC0 | c >> 6);
+                scratch[n++] = (byte) (0x80 | c & 0x3F);
+            } else if(Character.isSurrogate(c)) {
+                if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(name.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, name.charAt(++i));
+                    scratch[n++] = (byte) (0xF0 | codePoint >> 18);
+                    scratch[n++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    scratch[n++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    scratch[n++] = (byte) (0x80 | codePoint & 0x3F);
+                } else {
+                    scratch[n++] = '?';
+                }
+            } else {
+                scratch[n++] = (byte) (0xE0 | c >> 12);
+                scratch[n++] = (byte) (0x80 | c >> 6 & 0x3F);
+                scratch[n++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        if(n + HEADER > PAGE_SIZE) {
+            throw new IllegalArgumentException("name too long: " + n + " bytes");
+        }
+        scratchLength = n;
+        return hash(age, scratchBuffer, 0, n);
+    }
+
+    /*
+    * The hash of an age and name bytes, 8 bytes at a time. Never 0 (0 marks an empty slot).
+    * */
+    static int hash(int age, ByteBuffer bytes, int from, int length) {
+        long h = (age * 0x9E3779B97F4A7C15L) ^ length;
+        int i = 0;
+        for(; i + 8 <= length; i += 8) {
+            h = (h ^ bytes.getLong(from + i)) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 29;
+        }
+        long tail = 0;
+        for(int shift = 0; i < length; i++, shift += 8) {
+            tail |= (bytes.get(from + i) & 0xFFL) << shift;
+        }
+        h = (h ^ tail) * 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        int hash = (int) h;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static int recordSize(int nameLength) {
+        return (HEADER + nameLength + 7) & ~7;
+    }
+
+    /*
+    * Where a record is, in 8-byte units: with 64MB pages an unsigned int reaches 32GB of
+    * arena. The hash next to it is never 0, so a used slot is never 0 either.
+    * */
+    private static long reference(int page, int position) {
+        return ((long) page << PAGE_SHIFT | position) >>> 3;
+    }
+
+    private static long slot(int hash, long reference) {
+        return (long) hash << 32 | reference;
+    }
+
+    private static int hashOf(long slot) {
+        return (int) (slot >>> 32);
+    }
+
+    private ByteBuffer pageOf(long slot) {
+        return pages[(int) ((slot & 0xFFFFFFFFL) >>> (PAGE_SHIFT - 3))];
+    }
+
+    private static int positionOf(long slot) {
+        return (int) (slot << 3) & (PAGE_SIZE - 1);
+    }
+
+    private long slotAt(int index) {
+        return table.getLong(index << 3);
+    }
+
+    private void setSlot(int index, long slot) {
+        table.putLong(index << 3, slot);
+    }
+
+    /*
+    * Whether the record of a slot is the key in the scratch buffer.
+    * */
+    private boolean matches(long slot, int age) {
+        ByteBuffer p = pageOf(slot);
+        int at = positionOf(slot);
+        if(p.getInt(at) != age || p.getInt(at + 4) != scratchLength) {
+            return false;
+        }
+        at += HEADER;
+        int i = 0;
+        for(; i + 8 <= scratchLength; i += 8) {
+            if(p.getLong(at + i) != scratchBuffer.getLong(i)) {
+                return false;
+            }
+        }
+        for(; i < scratchLength; i++) {
+            if(p.get(at + i) != scratch[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+    * The index of the slot of the key in the scratch buffer, or -(index of the empty slot
+    * that ends its cluster) - 1.
+    * */
+    private int find(int hash, int age) {
+        for(int i = hash & mask; ; i = (i + 1) & mask) {
+            long slot = slotAt(i);
+            if(slot == 0) {
+                return -i - 1;
+            }
+            if(hashOf(slot) == hash && matches(slot, age)) {
+                return i;
+            }
+        }
+    }
+
+    // ===== operations =====
+
+    public boolean contains(int age, CharSequence name) {
+        return find(encode(age, name), age) >= 0;
+    }
+
+    public boolean contains(Contact contact) {
+        return contains(contact.getAge(), contact.getName());
+    }
+
+    public boolean add(int age, CharSequence name) {
+        int hash = encode(age, name);
+        int index = find(hash, age);
+        if(index >= 0) {
+            return false;
+        }
+        setSlot(-index - 1, slot(hash, append(age)));
+        if(++size > (mask + 1) * LOAD_FACTOR) {
+            resize();
+        }
+        return true;
+    }
+
+    public boolean add(Contact contact) {
+        return add(contact.getAge(), contact.getName());
+    }
+
+    public boolean remove(int age, CharSequence name) {
+        int index = find(encode(age, name), age);
+        if(index < 0) {
+            return false;
+        }
+        int bytes = recordSize(scratchLength);
+        liveBytes -= bytes;
+        garbageBytes += bytes;
+        deleteSlot(index);
+        size--;
+        if(garbageBytes > liveBytes && garbageBytes > 4096) {
+            compact();
+        }
+        return true;
+    }
+
+    public boolean remove(Contact contact) {
+        return remove(contact.getAge(), contact.getName());
+    }
+
+    /*
+    * Empties a slot and moves later slots of the cluster back, so that every entry can still
+    * be reached from its home slot without passing an empty one.
+    * */
+    private void deleteSlot(int hole) {
+        for(int i = (hole + 1) & mask; ; i = (i + 1) & mask) {
+            long slot = slotAt(i);
+            if(slot == 0) {
+                break;
+            }
+            int home = hashOf(slot) & mask;
+            // the entry may move into the hole if its home is not between the hole and i
+            if(((i - home) & mask) >= ((i - hole) & mask)) {
+                setSlot(hole, slot);
+                hole = i;
+            }
+        }
+        setSlot(hole, 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        table = newTable(16);
+        mask = 15;
+        size = 0;
+        pages = new ByteBuffer[] {newPage(4096)};
+        page = 0;
+        position = 0;
+        liveBytes = 0;
+        garbageBytes = 0;
+    }
+
+    /*
+    * Copies the key in the scratch buffer to the end of the arena; returns its reference.
+    * */
+    private long append(int age) {
+        int bytes = recordSize(scratchLength);
+        ByteBuffer p = pages[page];
+        if(position + bytes > p.capacity()) {
+            if(position + bytes <= PAGE_SIZE) {
+                // pages start small and double up to PAGE_SIZE, so small sets stay small
+                int capacity = p.capacity();
+                while(capacity < position + bytes) {
+                    capacity *= 2;
+                }
+                ByteBuffer bigger = newPage(capacity);
+                bigger.put(0, p, 0, position);
+                pages[page] = p = bigger;
+            } else {
+                if(++page == pages.length) {
+                    pages = Arrays.copyOf(pages, pages.length * 2);
+                }
+                if((long) page << PAGE_SHIFT >= 1L << 35) {
+                    throw new IllegalStateException("arena full");
+                }
+                pages[page] = p = newPage(Math.max(4096, Integer.highestOneBit(bytes - 1) << 1));
+                position = 0;
+            }
+        }
+        p.putInt(position, age);
+        p.putInt(position + 4, scratchLength);
+        p.put(position + HEADER, scratchBuffer, 0, scratchLength);
+        long reference = reference(page, position);
+        position += bytes;
+        liveBytes += bytes;
+        return reference;
+    }
+
+    private void resize() {
+        if(mask + 1 == MAX_SLOTS) {
+            throw new IllegalStateException("too many entries: " + size);
+        }
+        ByteBuffer old = table;
+        table = newTable((mask + 1) * 2);
+        mask = table.capacity() / 8 - 1;
+        for(int i = 0; i < old.capacity(); i += 8) {
+            long slot = old.getLong(i);
+            if(slot != 0) {
+                // the hash is in the slot: no need to read the record again
+                int j = hashOf(slot) & mask;
+                while(slotAt(j) != 0) {
+                    j = (j + 1) & mask;
+                }
+                setSlot(j, slot);
+            }
+        }
+    }
+
+    /*
+    * Copies the live records into a fresh arena, in table order, and drops the removed ones.
+    * */
+    public void compact() {
+        ByteBuffer[] oldPages = pages;
+        pages = new ByteBuffer[] {newPage((int) Math.min(PAGE_SIZE, Math.max(4096, Long.highestOneBit(liveBytes) << 1)))};
+        page = 0;
+        position = 0;
+        liveBytes = 0;
+        garbageBytes = 0;
+        for(int i = 0; i <= mask; i++) {
+            long slot = slotAt(i);
+            if(slot != 0) {
+                ByteBuffer p = oldPages[(int) ((slot & 0xFFFFFFFFL) >>> (PAGE_SHIFT - 3))];
+                int at = positionOf(slot);
+                int length = p.getInt(at + 4);
+                if(length > scratch.length) {
+                    scratch = new byte[Integer.highestOneBit(length) << 1];
+                    scratchBuffer = ByteBuffer.wrap(scratch).order(ByteOrder.nativeOrder());
+                }
+                scratchBuffer.put(0, p, at + HEADER, length);
+                scratchLength = length;
+                setSlot(i, slot(hashOf(slot), append(p.getInt(at))));
+            }
+        }
+    }
+
+    // ===== iteration =====
+
+    /*
+    * Calls the action for every entry, in table order. The Entry is the same object every
+    * time and reads the current record in place; copy what you need (name() makes a String).
+    * The set must not be changed meanwhile.
+    * */
+    public void forEach(Consumer<? super Entry> action) {
+        Entry entry = new Entry();
+        for(int i = 0; i <= mask; i++) {
+            long slot = slotAt(i);
+            if(slot != 0) {
+                entry.page = pageOf(slot);
+                entry.position = positionOf(slot);
+                action.accept(entry);
+            }
+        }
+    }
+
+    public static final class Entry {
+        private ByteBuffer page;
+        private int position;
+
+        private Entry() {
+        }
+
+        public int age() {
+            return page.getInt(position);
+        }
+
+        /*
+        * The length of the name in UTF-8 bytes.
+        * */
+        public int nameLength() {
+            return page.getInt(position + 4);
+        }
+
+        /*
+        * Copies the UTF-8 bytes of the name into dst at offset.
+        * */
+        public void nameBytes(byte[] dst, int offset) {
+            page.get(position + HEADER, dst, offset, nameLength());
+        }
+
+        public String name() {
+            byte[] bytes = new byte[nameLength()];
+            nameBytes(bytes, 0);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public Contact toContact() {
+            return new Contact(age(), name());
+        }
+
+        @Override
+        public String toString() {
+            return name() + ", " + age();
+        }
+    }
+
+    // ===== stats =====
+
+    public Stats stats() {
+        int[] distances = new int[16];
+        int longest = 0;
+        for(int i = 0; i <= mask; i++) {
+            long slot = slotAt(i);
+            if(slot != 0) {
+                int distance = (i - (hashOf(slot) & mask)) & mask;
+                if(distance >= distances.length) {
+                    distances = Arrays.copyOf(distances, Math.max(distance + 1, distances.length * 2));
+                }
+                distances[distance]++;
+                longest = Math.max(longest, distance);
+            }
+        }
+        long arenaBytes = 0;
+        for(int p = 0; p <= page; p++) {
+            arenaBytes += pages[p].capacity();
+        }
+        return new Stats(size, mask + 1, Arrays.copyOf(distances, longest + 1), table.capacity(), arenaBytes, liveBytes, garbageBytes);
+    }
+
+    /*
+    * How full the table is, how far entries are from their home slot and how much memory
+    * is used. histogram[k] is the number of entries found with k + 1 probes (k slots past
+    * their home slot).
+    * */
+    public static class Stats {
+        private final int entries;
+        private final int slots;
+        private final int[] histogram;
+        private final long tableBytes;
+        private final long arenaBytes;
+        private final long liveBytes;
+        private final long garbageBytes;
+
+        Stats(int entries, int slots, int[] histogram, long tableBytes, long arenaBytes, long liveBytes, long garbageBytes) {
+            this.entries = entries;
+            this.slots = slots;
+            this.histogram = histogram;
+            this.tableBytes = tableBytes;
+            this.arenaBytes = arenaBytes;
+            this.liveBytes = liveBytes;
+            this.garbageBytes = garbageBytes;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public int getSlots() {
+            return slots;
+        }
+
+        public double getLoadFactor() {
+            return (double) entries / slots;
+        }
+
+        public int[] getHistogram() {
+            return histogram.clone();
+        }
+
+        public int getLongestProbe() {
+            return entries == 0 ? 0 : histogram.length;
+        }
+
+        /*
+        * Average number of slots read by a successful lookup (1 is perfect).
+        * */
+        public double getAverageProbes() {
+            long probes = 0;
+            for(int k = 0; k < histogram.length; k++) {
+                probes += (long) histogram[k] * (k + 1);
+            }
+            return entries == 0 ? 0 : (double) probes / entries;
+        }
+
+        /*
+        * Off-heap bytes (table and arena, as allocated) per entry.
+        * */
+        public double getBytesPerEntry() {
+            return entries == 0 ? 0 : (double) (tableBytes + arenaBytes) / entries;
+        }
+
+        public long getTableBytes() {
+            return tableBytes;
+        }
+
+        public long getArenaBytes() {
+            return arenaBytes;
+        }
+
+        public long getLiveBytes() {
+            return liveBytes;
+        }
+
+        public long getGarbageBytes() {
+            return garbageBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "entries=" + entries +
+                    ", slots=" + slots +
+                    ", loadFactor=" + String.format("%.2f", getLoadFactor()) +
+                    ", averageProbes=" + String.format("%.2f", getAverageProbes()) +
+                    ", longestProbe=" + getLongestProbe() +
+                    ", bytesPerEntry=" + String.format("%.1f", getBytesPerEntry()) +
+                    ", garbageBytes=" + garbageBytes +
+                    '}';
+        }
+    }
+}
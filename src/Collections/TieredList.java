@@ -0,0 +1,304 @@
+package Collections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class TieredList<E> extends AbstractList<E> implements RandomAccess {
+
+    /*
+    * A List with O(1) get() like ArrayList, but with inserts and removes in the middle in
+    * O(sqrt(n)) instead of O(n): a "tiered vector".
+    *
+    * ArrayList.add(1, x), remove(0) and remove(Object) move the whole tail of the array by
+    * one place; with a million elements that is a few hundred microseconds every time. Here
+    * the elements are cut into blocks of B slots, B a power of 2 around sqrt(n), and every
+    * block is a small ring buffer (it has its own start, `heads[b]`):
+    *
+    *   block 0        block 1        block 2
+    *   [c d a b]      [g h e f]      [i j _ _]     heads = {2, 2, 0}  ->  a b c d e f g h i j
+    *
+    * All the blocks are full except the last one, so element i is in block i / B, at slot
+    * (heads[i / B] + i % B) % B: get() is two array reads and some bit masking.
+    *
+    * add(i, x) shifts the elements inside block i / B, like ArrayList but over at most B/2
+    * elements (whichever side is shorter). That block now has one element too many, so its
+    * last element moves to the front of the next block - in a ring buffer that is just
+    * moving `heads` back by one, O(1) - and so on up to the last block. remove(i) is the
+    * same the other way round. Both are O(B + n / B) = O(sqrt(n)).
+    *
+    * When n has grown (or shrunk) 4 times, B is doubled (halved) and everything is laid out
+    * again; that costs O(n) but only every time n changes a lot, like ArrayList's growth.
+    * All blocks share one Object[] so the data stays together in memory.
+    *
+    * Where ArrayList stays faster: get() and iteration do a bit more work per element
+    * (forEach() walks each block as two plain array ranges to keep that small), and add()
+    * at the end is about the same. So this only pays off when there are inserts or removes
+    * away from the end. removeIf() and clearing a subList() compact everything in one O(n)
+    * pass instead of one remove after the other.
+    *
+    * null elements are allowed. Not thread safe.
+    * */
+
+    static final int MIN_SHIFT = 4; // blocks of at least 16
+
+    private Object[] data;
+    private int[] heads;
+    private int shift;      // B = 1 << shift
+    private int mask;       // B - 1
+    private int blocks;     // blocks in use; block blocks-1 is the last one
+    private int size;
+
+    public TieredList() {
+        layout(new Object[0], 0);
+    }
+
+    public TieredList(Collection<? extends E> elements) {
+        Object[] array = elements.toArray();
+        layout(array, array.length);
+    }
+
+    /*
+    * The block size for n elements: the smallest power of 2 with B * B >= n.
+    * */
+    static int shiftFor(int n) {
+        int shift = MIN_SHIFT;
+        while((1L << (2 * shift)) < n) {
+            shift++;
+        }
+        return shift;
+    }
+
+    /*
+    * Puts the first n elements of the array into fresh blocks, with the block size for n.
+    * */
+    private void layout(Object[] elements, int n) {
+        shift = shiftFor(n);
+        mask = (1 << shift) - 1;
+        blocks = (n + mask) >>> shift;
+        int capacity = Math.max(1, blocks);
+        data = new Object[capacity << shift];
+        heads = new int[capacity];
+        System.arraycopy(elements, 0, data, 0, n);
+        size = n;
+    }
+
+    private void relayout() {
+        layout(toArray(), size);
+    }
+
+    private int slot(int block, int offset) {
+        return (block << shift) + ((heads[block] + offset) & mask);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        return (E) data[slot(index >>> shift, index & mask)];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(int index, E element) {
+        Objects.checkIndex(index, size);
+        int s = slot(index >>> shift, index & mask);
+        E old = (E) data[s];
+        data[s] = element;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(E e) {
+        add(size, e);
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if(index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        if(size + 1 > 4L << (2 * shift)) {
+            relayout(); // B grows
+        }
+        int last = size >>> shift; // the block that gets the new last slot
+        if(last == blocks) {
+            addBlock();
+        }
+        int block = index >>> shift;
+        // make room in `block`: every full block after it hands its last element to the next
+        for(int b = last; b > block; b--) {
+            heads[b] = (heads[b] - 1) & mask;
+            int from = slot(b - 1, mask);
+            data[slot(b, 0)] = data[from];
+            data[from] = null;
+        }
+        int count = block == last ? size - (last << shift) : mask; // elements left in block
+        insertInBlock(block, index & mask, count, element);
+        size++;
+        modCount++;
+    }
+
+    private void addBlock() {
+        if((blocks + 1) << shift > data.length) {
+            int capacity = Math.max(blocks + 1, heads.length * 2);
+            data = Arrays.copyOf(data, capacity << shift);
+            heads = Arrays.copyOf(heads, capacity);
+        }
+        heads[blocks++] = 0;
+    }
+
+    /*
+    * Inserts at `offset` in a block holding `count` elements (count < B).
+    * */
+    private void insertInBlock(int block, int offset, int count, Object element) {
+        if(offset < count / 2) {
+            // move the front part one slot back
+            int head = (heads[block] - 1) & mask;
+            heads[block] = head;
+            for(int i = 0; i < offset; i++) {
+                data[slot(block, i)] = data[slot(block, i + 1)];
+            }
+        } else {
+            for(int i = count; i > offset; i--) {
+                data[slot(block, i)] = data[slot(block, i - 1)];
+            }
+        }
+        data[slot(block, offset)] = element;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E remove(int index) {
+        Objects.checkIndex(index, size);
+        int block = index >>> shift;
+        int last = (size - 1) >>> shift;
+        int count = block == last ? size - (last << shift) : mask + 1;
+        E old = (E) data[slot(block, index & mask)];
+        removeInBlock(block, index & mask, count);
+        // every block after it hands its first element to the one before
+        for(int b = block + 1; b <= last; b++) {
+            int from = slot(b, 0);
+            data[slot(b - 1, mask)] = data[from];
+            data[from] = null;
+            heads[b] = (heads[b] + 1) & mask;
+        }
+        size--;
+        modCount++;
+        if(size == last << shift) {
+            blocks--;
+            heads[blocks] = 0;
+        }
+        if(shift > MIN_SHIFT && size < 1 << (2 * shift - 4)) {
+            relayout(); // B shrinks
+        }
+        return old;
+    }
+
+    /*
+    * Removes at `offset` from a block holding `count` elements, leaving its last slot free.
+    * */
+    private void removeInBlock(int block, int offset, int count) {
+        if(offset < count / 2) {
+            for(int i = offset; i > 0; i--) {
+                data[slot(block, i)] = data[slot(block, i - 1)];
+            }
+            data[slot(block, 0)] = null;
+            heads[block] = (heads[block] + 1) & mask;
+            // the ring now starts one later, so the block's elements are still 0..count-2
+        } else {
+            for(int i = offset; i < count - 1; i++) {
+                data[slot(block, i)] = data[slot(block, i + 1)];
+            }
+            data[slot(block, count - 1)] = null;
+        }
+    }
+
+    @Override
+    public void clear() {
+        layout(new Object[0], 0);
+        modCount++;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = new Object[size];
+        int n = 0;
+        for(int b = 0; b < blocks && n < size; b++) {
+            int count = Math.min(mask + 1, size - n);
+            int base = b << shift;
+            int head = heads[b];
+            int first = Math.min(count, mask + 1 - head); // up to the end of the block's slots
+            System.arraycopy(data, base + head, result, n, first);
+            System.arraycopy(data, base, result, n + first, count - first);
+            n += count;
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        int n = 0;
+        for(int b = 0; b < blocks && n < size; b++) {
+            int count = Math.min(mask + 1, size - n);
+            int base = b << shift;
+            int head = heads[b];
+            int first = Math.min(count, mask + 1 - head);
+            for(int i = base + head, end = base + head + first; i < end; i++) {
+                action.accept((E) data[i]);
+            }
+            for(int i = base, end = base + count - first; i < end; i++) {
+                action.accept((E) data[i]);
+            }
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            n += count;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        Object[] elements = toArray();
+        int kept = 0;
+        for(Object e : elements) {
+            if(!filter.test((E) e)) {
+                elements[kept++] = e;
+            }
+        }
+        if(kept == size) {
+            return false;
+        }
+        layout(elements, kept);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if(toIndex - fromIndex <= 1) {
+            super.removeRange(fromIndex, toIndex);
+            return;
+        }
+        Object[] elements = toArray();
+        System.arraycopy(elements, toIndex, elements, fromIndex, size - toIndex);
+        layout(elements, size - (toIndex - fromIndex));
+        modCount++;
+    }
+}
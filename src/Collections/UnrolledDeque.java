@@ -0,0 +1,715 @@
+package Collections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+public class UnrolledDeque<E> extends AbstractList<E> implements Deque<E> {
+
+    /*
+    * A Deque and List like LinkedList, but with up to 64 elements per node ("unrolled").
+    *
+    * LinkedList has one node per element: 24 bytes (32 with big object headers) plus the
+    * element, and iterating means following a pointer to a node that can be anywhere in
+    * memory. Here a node ("chunk") holds an array of 64 slots, and the elements of a chunk
+    * sit next to each other in items[start..end):
+    *
+    *   head                         tail
+    *   [ _ _ _ a b c ] <-> [ d e f g h i ] <-> [ j k _ _ _ _ ]
+    *
+    *   - addFirst() writes in front of the head chunk's elements, addLast() behind the tail
+    *     chunk's; a new chunk is linked in only when the end chunk is full. removeFirst() and
+    *     removeLast() clear the slot and unlink a chunk that became empty (one is kept as a
+    *     spare, so a queue going back and forth doesn't allocate). All O(1).
+    *   - remove(Object) and remove(int) close the gap inside one chunk, moving whichever
+    *     side is shorter: at most 32 references. If the chunk and the next one together fit
+    *     into half a chunk they are merged, so middle removals don't leave a trail of almost
+    *     empty chunks.
+    *   - add(int, E) shifts inside the chunk too, splitting it in two halves when full.
+    *   - get(int) walks chunk by chunk from the nearer end, 64 elements per step: O(n / 64),
+    *     against O(n) for LinkedList (and O(1) for ArrayList).
+    *   - iteration, forEach(), indexOf(), contains() run over plain arrays.
+    *
+    * A full chunk costs about 1 byte of bookkeeping per element (the chunk object and the
+    * array header, spread over 64 elements) plus the 4 or 8 byte slot, instead of LinkedList's
+    * 24-32 bytes.
+    *
+    * null elements are not allowed, as in ArrayDeque: pollFirst() etc. use null to say the
+    * deque is empty. Not thread safe; the iterators are fail-fast.
+    * */
+
+    static final int CHUNK = 64;
+
+    private Chunk head;
+    private Chunk tail;
+    private Chunk spare;
+    private int size;
+
+    public UnrolledDeque() {
+        head = tail = new Chunk(CHUNK / 2);
+    }
+
+    public UnrolledDeque(Iterable<? extends E> elements) {
+        this();
+        for(E e : elements) {
+            addLast(e);
+        }
+    }
+
+    private static final class Chunk {
+        final Object[] items = new Object[CHUNK];
+        int start;
+        int end;
+        Chunk prev;
+        Chunk next;
+
+        Chunk(int position) {
+            start = end = position;
+        }
+
+        int size() {
+            return end - start;
+        }
+    }
+
+    /*
+    * A position: the slot index in a chunk. At the end of the deque it is (tail, tail.end).
+    * */
+    private static class Cursor {
+        Chunk chunk;
+        int index;
+    }
+
+    private Chunk newChunk(int position) {
+        Chunk c = spare;
+        if(c == null) {
+            return new Chunk(position);
+        }
+        spare = null;
+        c.start = c.end = position;
+        return c;
+    }
+
+    // ===== Deque =====
+
+    @Override
+    public void addFirst(E e) {
+        Objects.requireNonNull(e);
+        if(head.start == 0) {
+            if(head.end == 0) {
+                head.start = head.end = CHUNK; // the only chunk, empty
+            } else {
+                Chunk c = newChunk(CHUNK);
+                c.next = head;
+                head.prev = c;
+                head = c;
+            }
+        }
+        head.items[--head.start] = e;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public void addLast(E e) {
+        Objects.requireNonNull(e);
+        if(tail.end == CHUNK) {
+            if(tail.start == CHUNK) {
+                tail.start = tail.end = 0;
+            } else {
+                Chunk c = newChunk(0);
+                c.prev = tail;
+                tail.next = c;
+                tail = c;
+            }
+        }
+        tail.items[tail.end++] = e;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public boolean offerFirst(E e) {
+        addFirst(e);
+        return true;
+    }
+
+    @Override
+    public boolean offerLast(E e) {
+        addLast(e);
+        return true;
+    }
+
+    @Override
+    public E removeFirst() {
+        E e = pollFirst();
+        if(e == null) {
+            throw new NoSuchElementException();
+        }
+        return e;
+    }
+
+    @Override
+    public E removeLast() {
+        E e = pollLast();
+        if(e == null) {
+            throw new NoSuchElementException();
+        }
+        return e;
+    }
+
+    @Override
+    public E pollFirst() {
+        if(size == 0) {
+            return null;
+        }
+        E e = element(head, head.start);
+        removeAt(head, head.start, null);
+        return e;
+    }
+
+    @Override
+    public E pollLast() {
+        if(size == 0) {
+            return null;
+        }
+        E e = element(tail, tail.end - 1);
+        removeAt(tail, tail.end - 1, null);
+        return e;
+    }
+
+    @Override
+    public E getFirst() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return element(head, head.start);
+    }
+
+    @Override
+    public E getLast() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return element(tail, tail.end - 1);
+    }
+
+    @Override
+    public E peekFirst() {
+        return size == 0 ? null : element(head, head.start);
+    }
+
+    @Override
+    public E peekLast() {
+        return size == 0 ? null : element(tail, tail.end - 1);
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+        if(o == null) {
+            return false;
+        }
+        for(Chunk c = head; c != null; c = c.next) {
+            Object[] a = c.items;
+            for(int i = c.start; i < c.end; i++) {
+                if(o.equals(a[i])) {
+                    removeAt(c, i, null);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+        if(o == null) {
+            return false;
+        }
+        for(Chunk c = tail; c != null; c = c.prev) {
+            Object[] a = c.items;
+            for(int i = c.end - 1; i >= c.start; i--) {
+                if(o.equals(a[i])) {
+                    removeAt(c, i, null);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        return offerLast(e);
+    }
+
+    @Override
+    public E remove() {
+        return removeFirst();
+    }
+
+    @Override
+    public E poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public E element() {
+        return getFirst();
+    }
+
+    @Override
+    public E peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public void push(E e) {
+        addFirst(e);
+    }
+
+    @Override
+    public E pop() {
+        return removeFirst();
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        ListIterator<E> backwards = listIterator(size);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return backwards.hasPrevious();
+            }
+
+            @Override
+            public E next() {
+                return backwards.previous();
+            }
+
+            @Override
+            public void remove() {
+                backwards.remove();
+            }
+        };
+    }
+
+    // ===== List =====
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean add(E e) {
+        addLast(e);
+        return true;
+    }
+
+    @Override
+    public void add(int index, E e) {
+        if(index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        if(index == size) {
+            addLast(e);
+        } else if(index == 0) {
+            addFirst(e);
+        } else {
+            Cursor at = locate(index);
+            insertAt(at.chunk, at.index, Objects.requireNonNull(e));
+        }
+    }
+
+    @Override
+    public E get(int index) {
+        Cursor at = locate(Objects.checkIndex(index, size));
+        return element(at.chunk, at.index);
+    }
+
+    @Override
+    public E set(int index, E e) {
+        Objects.requireNonNull(e);
+        Cursor at = locate(Objects.checkIndex(index, size));
+        E old = element(at.chunk, at.index);
+        at.chunk.items[at.index] = e;
+        return old;
+    }
+
+    @Override
+    public E remove(int index) {
+        Cursor at = locate(Objects.checkIndex(index, size));
+        E old = element(at.chunk, at.index);
+        removeAt(at.chunk, at.index, null);
+        return old;
+    }
+
+    /*
+    * The first occurrence, like LinkedList.remove(Object).
+    * */
+    @Override
+    public boolean remove(Object o) {
+        return removeFirstOccurrence(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if(o == null) {
+            return -1;
+        }
+        int index = 0;
+        for(Chunk c = head; c != null; c = c.next) {
+            Object[] a = c.items;
+            for(int i = c.start; i < c.end; i++, index++) {
+                if(o.equals(a[i])) {
+                    return index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        if(o == null) {
+            return -1;
+        }
+        int index = size - 1;
+        for(Chunk c = tail; c != null; c = c.prev) {
+            Object[] a = c.items;
+            for(int i = c.end - 1; i >= c.start; i--, index--) {
+                if(o.equals(a[i])) {
+                    return index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public void clear() {
+        for(Chunk c = head; c != null; c = c.next) {
+            Arrays.fill(c.items, c.start, c.end, null);
+        }
+        head = tail = new Chunk(CHUNK / 2);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = new Object[size];
+        int n = 0;
+        for(Chunk c = head; c != null; c = c.next) {
+            System.arraycopy(c.items, c.start, result, n, c.size());
+            n += c.size();
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        for(Chunk c = head; c != null; c = c.next) {
+            Object[] a = c.items;
+            for(int i = c.start, end = c.end; i < end; i++) {
+                action.accept((E) a[i]);
+            }
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new ListItr(0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        if(index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return new ListItr(index);
+    }
+
+    // ===== the chunks =====
+
+    @SuppressWarnings("unchecked")
+    private E element(Chunk c, int i) {
+        return (E) c.items[i];
+    }
+
+    private Cursor locate(int index) {
+        Cursor at = new Cursor();
+        locate(index, at);
+        return at;
+    }
+
+    private void locate(int index, Cursor at) {
+        Chunk c;
+        if(index < size / 2) {
+            c = head;
+            while(index >= c.size()) {
+                index -= c.size();
+                c = c.next;
+            }
+            at.index = c.start + index;
+        } else {
+            int fromEnd = size - index;
+            c = tail;
+            while(fromEnd > c.size()) {
+                fromEnd -= c.size();
+                c = c.prev;
+            }
+            at.index = c.end - fromEnd;
+        }
+        at.chunk = c;
+    }
+
+    /*
+    * Inserts e before slot i of chunk c (c.start <= i <= c.end).
+    * */
+    private void insertAt(Chunk c, int i, Object e) {
+        if(c.size() == CHUNK) {
+            // split: the upper half goes into a new chunk after this one
+            int half = CHUNK / 2;
+            Chunk upper = newChunk(0);
+            System.arraycopy(c.items, half, upper.items, 0, CHUNK - half);
+            Arrays.fill(c.items, half, CHUNK, null);
+            upper.end = CHUNK - half;
+            c.end = half;
+            upper.prev = c;
+            upper.next = c.next;
+            if(c.next != null) {
+                c.next.prev = upper;
+            } else {
+                tail = upper;
+            }
+            c.next = upper;
+            if(i > half) {
+                c = upper;
+                i -= half;
+            }
+        }
+        Object[] a = c.items;
+        if(c.end < CHUNK && (c.start == 0 || c.end - i <= i - c.start)) {
+            System.arraycopy(a, i, a, i + 1, c.end - i);
+            a[i] = e;
+            c.end++;
+        } else {
+            System.arraycopy(a, c.start, a, c.start - 1, i - c.start);
+            a[i - 1] = e;
+            c.start--;
+        }
+        size++;
+        modCount++;
+    }
+
+    /*
+    * Removes slot i of chunk c. If `follower` isn't null it is set to the position of the
+    * element that came after the removed one.
+    * */
+    private void removeAt(Chunk c, int i, Cursor follower) {
+        Object[] a = c.items;
+        int next;
+        if(i - c.start < c.end - 1 - i) {
+            System.arraycopy(a, c.start, a, c.start + 1, i - c.start);
+            a[c.start++] = null;
+            next = i + 1;
+        } else {
+            System.arraycopy(a, i + 1, a, i, c.end - 1 - i);
+            a[--c.end] = null;
+            next = i;
+        }
+        size--;
+        modCount++;
+
+        Chunk nextChunk = c;
+        if(c.start == c.end) {
+            if(c == head && c == tail) {
+                c.start = c.end = CHUNK / 2;
+                next = c.end;
+            } else {
+                Chunk after = c.next;
+                unlink(c);
+                nextChunk = after != null ? after : tail;
+                next = after != null ? after.start : tail.end;
+            }
+        } else {
+            Chunk after = c.next;
+            if(after != null && c.size() + after.size() <= CHUNK / 2) {
+                int shift = 0;
+                if(c.end + after.size() > CHUNK) {
+                    shift = c.start;
+                    System.arraycopy(a, c.start, a, 0, c.size());
+                    Arrays.fill(a, Math.max(c.size(), c.start), c.end, null);
+                    c.end -= shift;
+                    c.start = 0;
+                }
+                int base = c.end;
+                System.arraycopy(after.items, after.start, a, base, after.size());
+                Arrays.fill(after.items, after.start, after.end, null);
+                c.end += after.size();
+                after.start = after.end;
+                unlink(after);
+                next -= shift; // `next` was in c, or at c.end meaning after.start, which is now base
+            }
+            if(next == c.end && c.next != null) {
+                nextChunk = c.next;
+                next = nextChunk.start;
+            }
+        }
+        if(follower != null) {
+            follower.chunk = nextChunk;
+            follower.index = next;
+        }
+    }
+
+    /*
+    * Takes an empty chunk out of the list; never the only one.
+    * */
+    private void unlink(Chunk c) {
+        if(c.prev != null) {
+            c.prev.next = c.next;
+        } else {
+            head = c.next;
+        }
+        if(c.next != null) {
+            c.next.prev = c.prev;
+        } else {
+            tail = c.prev;
+        }
+        c.prev = c.next = null;
+        spare = c;
+    }
+
+    /*
+    * Walks the chunks directly. The cursor (chunk, index) is the slot of the element next()
+    * returns, or the end of its chunk.
+    * */
+    private final class ListItr extends Cursor implements ListIterator<E> {
+        private int nextIndex;
+        private Chunk lastChunk; // the element last returned, null after remove()/add()
+        private int lastIndex;
+        private int expectedModCount = modCount;
+
+        ListItr(int index) {
+            locate(index, this);
+            nextIndex = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < size;
+        }
+
+        @Override
+        public E next() {
+            checkForComodification();
+            if(nextIndex >= size) {
+                throw new NoSuchElementException();
+            }
+            if(index == chunk.end) {
+                chunk = chunk.next;
+                index = chunk.start;
+            }
+            lastChunk = chunk;
+            lastIndex = index;
+            nextIndex++;
+            return element(chunk, index++);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        @Override
+        public E previous() {
+            checkForComodification();
+            if(nextIndex <= 0) {
+                throw new NoSuchElementException();
+            }
+            if(index == chunk.start) {
+                chunk = chunk.prev;
+                index = chunk.end;
+            }
+            index--;
+            lastChunk = chunk;
+            lastIndex = index;
+            nextIndex--;
+            return element(chunk, index);
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        @Override
+        public void remove() {
+            if(lastChunk == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            // after next() the removed element was just before the cursor, after previous() at it
+            if(lastChunk != chunk || lastIndex != index) {
+                nextIndex--;
+            }
+            removeAt(lastChunk, lastIndex, this);
+            lastChunk = null;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void set(E e) {
+            if(lastChunk == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            lastChunk.items[lastIndex] = Objects.requireNonNull(e);
+        }
+
+        @Override
+        public void add(E e) {
+            checkForComodification();
+            UnrolledDeque.this.add(nextIndex, e);
+            nextIndex++;
+            locate(nextIndex, this);
+            lastChunk = null;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
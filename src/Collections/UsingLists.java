@@ -68,6 +68,13 @@ public class UsingLists {
         System.out.println(list); // [Sean, Alan, Mary]
         list.set(0, "jack"); // [Jack, Alan, Mary]
 
+        // the same List methods; add(1, ...) and remove(0) move sqrt(n) elements instead of all of them (see TieredList)
+        java.util.List<String> tiered = new TieredList<>(java.util.List.of("Alan", "Alan", "Mary", "Mary"));
+        tiered.add(1, "Sean");
+        tiered.remove(0);
+        tiered.remove("Mary");
+        System.out.println(tiered); // [Sean, Alan, Mary]
+
     }
 
     public static void stack() {
@@ -88,6 +95,21 @@ public class UsingLists {
         stack.push("Helen"); // [Andrea, Barbara, Helen]
         System.out.println(stack);
 
+        // the same LIFO methods without Vector's locking; ConcurrentStack is the one to share between threads
+        LifoStack<String> unsynchronized = new ArrayStack<>();
+        LifoStack<String> shared = new ConcurrentStack<>();
+        for(LifoStack<String> s : java.util.List.of(unsynchronized, shared)) {
+            s.push("Andrea");
+            s.push("Barbara");
+            s.push("Caroline");
+            System.out.println(s); // [Andrea, Barbara, Caroline]
+            System.out.println("Popped: " + s.pop() + ", top: " + s.peek()); // Popped: Caroline, top: Barbara
+        }
+
+        IntArrayStack ids = new IntArrayStack(); // no Integer per element
+        ids.push(7);
+        ids.push(42);
+        System.out.println("Popped id: " + ids.pop()); // 42
 
 
     }
@@ -105,6 +127,17 @@ public class UsingLists {
         names.removeFirst(); // [colin, Edward]
         names.removeLast(); // [colin]
         System.out.println(names); // [colin]
+
+        // the same operations, 64 elements per node instead of one (see UnrolledDeque)
+        UnrolledDeque<String> chunked = new UnrolledDeque<>();
+        chunked.add("Colin");
+        chunked.add("David");
+        chunked.addFirst("Brian");
+        chunked.addLast("Edward");
+        chunked.remove("David");
+        chunked.removeFirst();
+        chunked.removeLast();
+        System.out.println(chunked); // [Colin]
     }
 
 }
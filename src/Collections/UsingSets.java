@@ -2,6 +2,7 @@ package Collections;
 
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -19,6 +20,7 @@ public class UsingSets {
         //treeSet();
         //hashSet();
         linkedHashSet();
+        //contactDirectory();
     }
 
     public static void factoryMethods(){
@@ -51,6 +53,25 @@ public class UsingSets {
 
         // No duplicates, elements are sorted numerically
         System.out.println(numbers);
+
+        /*
+        * CompressedIntSet
+        * The same for ints without the boxing: about 1-2 bytes per element instead of ~56
+        * for a TreeSet<Integer>, with rank/select, ranges and fast and/or/andNot.
+        * asNavigableSet() gives a NavigableSet<Integer> view where one is needed.
+        * */
+        CompressedIntSet ids = CompressedIntSet.of(23, 21, 11, 99, 21);
+        ids.addRange(1_000, 1_999_999); // stored as runs, a few bytes per 65536 ids
+        System.out.println(ids.cardinality()); // 1999004
+        System.out.println(ids.rank(99) + " " + ids.select(3)); // 4 99
+        System.out.println(ids.ceiling(100) + " " + ids.floor(999)); // 1000 99
+
+        CompressedIntSet others = CompressedIntSet.of(11, 99, 5_000_000);
+        System.out.println(ids.and(others) + " " + others.andNot(ids)); // [11, 99] [5000000]
+
+        NavigableSet<Integer> view = ids.asNavigableSet();
+        System.out.println(view.headSet(1_002, true)); // [11, 21, 23, 99, 1000, 1001, 1002]
+        System.out.println(view.descendingSet().first()); // 1999999
     }
     
     public static void hashSet() {
@@ -67,6 +88,23 @@ public class UsingSets {
 
         System.out.println();
 
+        /*
+        * OffHeapContactSet
+        * The same set without any object per entry: (age, name bytes) records in off-heap
+        * memory and a flat linear-probing table, for when there are tens of millions of them
+        * and the garbage collector would have to trace every Contact, String and node.
+        * */
+        OffHeapContactSet offHeap = new OffHeapContactSet();
+        offHeap.add(new Contact(26, "Aaron Cerceda"));
+        offHeap.add(26, "Aaron Cerceda"); // only added once
+        offHeap.add(22, "William");
+        offHeap.add(18, "Alice");
+        offHeap.remove(22, "William");
+
+        System.out.println(offHeap.contains(18, "Alice") + " " + offHeap.size()); // true 2
+        offHeap.forEach(entry -> System.out.println(entry.name() + " is " + entry.age()));
+        System.out.println(offHeap.stats());
+
     }
 
     public static void linkedHashSet() {
@@ -91,4 +129,26 @@ public class UsingSets {
 
     }
 
+    public static void contactDirectory() {
+        /*
+        * ContactDirectory
+        * Contact.hashCode() only uses the age and the length of the name, so same-age contacts
+        * with same-length names share a bucket. ContactDirectory hashes the full name and adds
+        * an age index (range queries) and a name index (prefix queries).
+        * */
+
+        ContactDirectory directory = new ContactDirectory();
+        directory.add(new Contact(26, "Aaron Cerceda"));
+        directory.add(new Contact(26, "Aaron Cerceda")); // only added once
+        directory.add(new Contact(22, "William"));
+        directory.add(new Contact(18, "Alice"));
+        directory.add(new Contact(18, "Anne"));
+
+        System.out.println(directory.find("Alice", 18)); // Alice, 18
+        System.out.println(directory.byAgeRange(18, 22)); // [Alice, 18, Anne, 18, William, 22] (18's in any order)
+        System.out.println(directory.byNamePrefix("A")); // [Aaron Cerceda, 26, Alice, 18, Anne, 18]
+        System.out.println(directory.bucketStats());
+
+    }
+
 }
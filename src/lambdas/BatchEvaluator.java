@@ -0,0 +1,528 @@
+package lambdas;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class BatchEvaluator implements AutoCloseable {
+
+    /*
+    * Runs a Predicate or Function over a collection with many calls in flight at once - for
+    * predicates that block (a file or database lookup) rather than compute.
+    *
+    * filterData() and check() call the lambda on one thread, one element after the other. If
+    * every call waits 5ms on I/O, a million elements take more than an hour, and the CPU is
+    * idle nearly all the time. Here up to `concurrency` calls run at the same time, each on
+    * its own thread:
+    *   - on Java 21 and later, virtual threads (Executors.newVirtualThreadPerTaskExecutor,
+    *     looked up by reflection since this code is compiled for Java 17): a blocked call
+    *     doesn't hold an OS thread, so the concurrency can be in the thousands.
+    *   - before Java 21, a cached pool of platform threads, so keep the concurrency modest.
+    *
+    *   try(BatchEvaluator evaluator = BatchEvaluator.create(256, Duration.ofMinutes(5));
+    *       BatchEvaluator.Batch<String, Boolean> batch = evaluator.test(paths, p -> Files.exists(Path.of(p)))) {
+    *       for(BatchEvaluator.Result<String, Boolean> r : batch) {      // in input order
+    *           ...
+    *       }
+    *   }
+    *
+    * ===== A Batch is a scope =====
+    * Like structured concurrency: the calls of a batch don't outlive it. close() cancels
+    * whatever hasn't finished yet and waits until every call that was started has returned.
+    * cancel() does the same without waiting. If the batch has a timeout, it cancels itself
+    * when the time is up. Cancelling interrupts the calls that are running (blocking I/O
+    * usually gives up on an interrupt) and doesn't start the others.
+    *
+    * ===== Results =====
+    * Every element gets exactly one Result: SUCCESS with the value, FAILED with what the
+    * lambda threw, or CANCELLED. They can be consumed while the batch is still running:
+    *   - iterator() gives them in input order; it waits for the next one in line.
+    *   - completionOrder() gives them as soon as each one finishes.
+    * toList() and filter() wait for everything and throw on the first failure, or if the
+    * batch was cancelled.
+    * */
+
+    private final int concurrency;
+    private final long timeoutNanos; // 0 = none
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    private BatchEvaluator(int concurrency, Duration timeout) {
+        if(concurrency < 1) {
+            throw new IllegalArgumentException("concurrency " + concurrency);
+        }
+        if(timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout " + timeout);
+        }
+        this.concurrency = concurrency;
+        this.timeoutNanos = timeout.toNanos();
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtualThreads ? virtual : newPlatformThreadExecutor();
+    }
+
+    public static BatchEvaluator create(int concurrency) {
+        return new BatchEvaluator(concurrency, Duration.ZERO);
+    }
+
+    /*
+    * Every batch is cancelled when it has been running longer than the timeout.
+    * */
+    public static BatchEvaluator create(int concurrency, Duration timeout) {
+        if(timeout.isZero()) {
+            throw new IllegalArgumentException("timeout " + timeout);
+        }
+        return new BatchEvaluator(concurrency, timeout);
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e) {
+            return null; // before Java 21
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor() {
+        AtomicInteger threads = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "batch-evaluator-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /*
+    * Starts applying the function to every element; returns at once.
+    * */
+    public <T, R> Batch<T, R> map(Collection<? extends T> items, Function<? super T, ? extends R> function) {
+        return new Batch<>(items.toArray(), function);
+    }
+
+    public <T> Batch<T, Boolean> test(Collection<? extends T> items, Predicate<? super T> predicate) {
+        return map(items, predicate::test);
+    }
+
+    /*
+    * The elements that pass the predicate, in their original order. Waits for all of them;
+    * throws CompletionException if the predicate threw and CancellationException on timeout.
+    * */
+    public <T> List<T> filter(Collection<? extends T> items, Predicate<? super T> predicate) {
+        try(Batch<T, Boolean> batch = test(items, predicate)) {
+            List<T> passed = new ArrayList<>();
+            for(Result<T, Boolean> result : batch) {
+                if(result.getValue()) {
+                    passed.add(result.getInput());
+                }
+            }
+            return passed;
+        }
+    }
+
+    /*
+    * Batches should be closed first; this waits for the threads of any batch that wasn't.
+    * */
+    @Override
+    public void close() {
+        executor.shutdown();
+        boolean interrupted = false;
+        while(true) {
+            try {
+                if(executor.awaitTermination(1, TimeUnit.DAYS)) {
+                    break;
+                }
+            } catch(InterruptedException e) {
+                interrupted = true;
+                executor.shutdownNow();
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public enum Status {
+        SUCCESS, FAILED, CANCELLED
+    }
+
+    public static final class Result<T, R> {
+        private final int index;
+        private final T input;
+        private final R value;
+        private final Throwable error;
+        private final Status status;
+
+        private Result(int index, T input, R value, Throwable error, Status status) {
+            this.index = index;
+            this.input = input;
+            this.value = value;
+            this.error = error;
+            this.status = status;
+        }
+
+        /*
+        * The position of the input in the collection.
+        * */
+        public int getIndex() {
+            return index;
+        }
+
+        public T getInput() {
+            return input;
+        }
+
+        /*
+        * Throws CompletionException if the call failed and CancellationException if it was
+        * cancelled.
+        * */
+        public R getValue() {
+            switch(status) {
+                case FAILED:
+                    throw new CompletionException("element " + index + " failed", error);
+                case CANCELLED:
+                    throw new CancellationException("element " + index + " was cancelled");
+                default:
+                    return value;
+            }
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" + index + ", " + status + (status == Status.SUCCESS ? "=" + value : status == Status.FAILED ? "=" + error : "") + '}';
+        }
+    }
+
+    public final class Batch<T, R> implements Iterable<Result<T, R>>, AutoCloseable {
+        private final Object[] inputs;
+        private final Function<? super T, ? extends R> function;
+        private final long deadline;
+
+        private final AtomicReferenceArray<Result<T, R>> results;
+        private final AtomicReferenceArray<Call> running;
+        private final BlockingQueue<Result<T, R>> completed = new LinkedBlockingQueue<>();
+        private final CountDownLatch remaining;
+        private final Semaphore permits = new Semaphore(concurrency);
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition resultAdded = lock.newCondition();
+        private final CountDownLatch launched = new CountDownLatch(1);
+        private volatile boolean cancelled;
+
+        private Batch(Object[] inputs, Function<? super T, ? extends R> function) {
+            this.inputs = inputs;
+            this.function = function;
+            this.deadline = System.nanoTime() + timeoutNanos;
+            this.results = new AtomicReferenceArray<>(inputs.length);
+            this.running = new AtomicReferenceArray<>(inputs.length);
+            this.remaining = new CountDownLatch(inputs.length);
+            try {
+                executor.execute(this::launch);
+            } catch(RejectedExecutionException e) {
+                launched.countDown();
+                throw new IllegalStateException("the evaluator is closed", e);
+            }
+        }
+
+        /*
+        * Starts one call per element, never more than `concurrency` at a time, then waits
+        * for the last one (or the timeout).
+        * */
+        private void launch() {
+            try {
+                for(int i = 0; i < inputs.length && !cancelled; i++) {
+                    if(!acquire()) {
+                        cancel();
+                        break;
+                    }
+                    if(cancelled) {
+                        permits.release();
+                        break;
+                    }
+                    Call call = new Call(i);
+                    running.set(i, call);
+                    try {
+                        executor.execute(call);
+                    } catch(RejectedExecutionException e) {
+                        running.set(i, null);
+                        permits.release();
+                        complete(i, null, e, Status.FAILED);
+                    }
+                }
+                if(timeoutNanos == 0) {
+                    remaining.await();
+                } else if(!remaining.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    cancel();
+                }
+            } catch(InterruptedException e) {
+                cancel();
+            } finally {
+                launched.countDown();
+            }
+        }
+
+        private boolean acquire() throws InterruptedException {
+            if(timeoutNanos == 0) {
+                permits.acquire();
+                return true;
+            }
+            return permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(int i, R value, Throwable error, Status status) {
+            Result<T, R> result = new Result<>(i, (T) inputs[i], value, error, status);
+            // the first result wins: a call that finishes after cancel() is ignored
+            if(!results.compareAndSet(i, null, result)) {
+                return;
+            }
+            completed.add(result);
+            remaining.countDown();
+            lock.lock();
+            try {
+                resultAdded.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /*
+        * Stops the batch: running calls are interrupted, the others are not started, and every
+        * element without a result gets a CANCELLED one. Doesn't wait for the running calls.
+        * */
+        public void cancel() {
+            if(cancelled) {
+                return;
+            }
+            cancelled = true;
+            // results first, so whatever the interrupted calls throw is ignored
+            for(int i = 0; i < inputs.length; i++) {
+                if(results.get(i) == null) {
+                    complete(i, null, null, Status.CANCELLED);
+                }
+            }
+            for(int i = 0; i < inputs.length; i++) {
+                Call call = running.get(i);
+                if(call != null) {
+                    call.cancel();
+                }
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return remaining.getCount() == 0;
+        }
+
+        public int size() {
+            return inputs.length;
+        }
+
+        /*
+        * The results in input order, each as soon as it and all the ones before it are in.
+        * If the iterating thread is interrupted, the batch is cancelled.
+        * */
+        @Override
+        public Iterator<Result<T, R>> iterator() {
+            return new Iterator<>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < inputs.length;
+                }
+
+                @Override
+                public Result<T, R> next() {
+                    if(!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return await(next++);
+                }
+            };
+        }
+
+        private Result<T, R> await(int i) {
+            Result<T, R> result = results.get(i);
+            if(result != null) {
+                return result;
+            }
+            lock.lock();
+            try {
+                while((result = results.get(i)) == null) {
+                    try {
+                        resultAdded.await();
+                    } catch(InterruptedException e) {
+                        cancel(); // fills in every missing result, so the loop ends
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return result;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /*
+        * The results in the order they finish. Use either this or iterator(), once.
+        * */
+        public Iterable<Result<T, R>> completionOrder() {
+            return () -> new Iterator<>() {
+                private int taken;
+
+                @Override
+                public boolean hasNext() {
+                    return taken < inputs.length;
+                }
+
+                @Override
+                public Result<T, R> next() {
+                    if(!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    taken++;
+                    boolean interrupted = false;
+                    try {
+                        while(true) {
+                            try {
+                                return completed.take();
+                            } catch(InterruptedException e) {
+                                // every element gets a result once cancelled, so take() won't block forever
+                                interrupted = true;
+                                cancel();
+                            }
+                        }
+                    } finally {
+                        if(interrupted) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            };
+        }
+
+        /*
+        * All the values in input order. Throws CompletionException for the first failure and
+        * CancellationException if the batch was cancelled or timed out.
+        * */
+        public List<R> toList() {
+            List<R> values = new ArrayList<>(inputs.length);
+            for(Result<T, R> result : this) {
+                if(result.getStatus() != Status.SUCCESS) {
+                    cancel();
+                }
+                values.add(result.getValue());
+            }
+            return values;
+        }
+
+        /*
+        * Cancels what is left and waits until no call of this batch is running any more.
+        * */
+        @Override
+        public void close() {
+            cancel();
+            boolean interrupted = false;
+            while(true) {
+                try {
+                    launched.await();
+                    break;
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            permits.acquireUninterruptibly(concurrency);
+            permits.release(concurrency);
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /*
+        * One call of the function. A call that hasn't started when it is cancelled never
+        * runs; one that is running is interrupted. The interrupt is only sent while the call
+        * is RUNNING, and cleared when it ends, so it can't leak into the next task of a
+        * pooled thread.
+        * */
+        private final class Call implements Runnable {
+            private static final int NEW = 0, RUNNING = 1, DONE = 2;
+
+            private final int index;
+            private int state = NEW; // guarded by this
+            private Thread runner;
+
+            Call(int index) {
+                this.index = index;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void run() {
+                synchronized(this) {
+                    if(state != NEW) {
+                        return;
+                    }
+                    state = RUNNING;
+                    runner = Thread.currentThread();
+                }
+                try {
+                    if(!cancelled) {
+                        complete(index, function.apply((T) inputs[index]), null, Status.SUCCESS);
+                    }
+                } catch(Throwable e) {
+                    complete(index, null, e, Status.FAILED);
+                } finally {
+                    synchronized(this) {
+                        state = DONE;
+                        runner = null;
+                    }
+                    Thread.interrupted();
+                    running.set(index, null);
+                    permits.release();
+                }
+            }
+
+            synchronized void cancel() {
+                if(state == NEW) {
+                    state = DONE;
+                    running.set(index, null);
+                    permits.release();
+                } else if(state == RUNNING) {
+                    runner.interrupt();
+                }
+            }
+        }
+    }
+}
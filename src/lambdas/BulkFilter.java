@@ -0,0 +1,143 @@
+package lambdas;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+public class BulkFilter {
+
+    /*
+    * Removing the elements that match a Predicate, in place, in linear time.
+    *
+    * filterData() calls Iterator.remove() for every match. On an ArrayList every remove()
+    * shifts the whole tail of the array one place to the left, so removing m elements out
+    * of n costs O(n * m) - quadratic when many elements match. Here it is done in 2 phases:
+    *
+    *   1.- mark: the predicate is evaluated on every element and the matches are recorded
+    *       in a bitset (one bit per element, a long[] of n / 64 words). Large lists are
+    *       split into chunks which are marked in parallel; every chunk covers whole words of
+    *       the bitset, so no two threads ever write the same long.
+    *   2.- compact: one pass moves every element that is kept to its final position, then
+    *       the leftover tail is cut off at once (subList(...).clear()).
+    *
+    * The compaction needs set() and removing a range to work, which a List doesn't promise
+    * (Arrays.asList() has set() but no remove), so it is only done for ArrayList and Vector.
+    * Other RandomAccess lists are marked the same way and then the marked elements are
+    * removed through the iterator, like filterData(): a list that can't remove throws at the
+    * first remove(), before anything has changed. CopyOnWriteArrayList copies its array on
+    * every change, so it gets its own removeIf(), which does it in one copy.
+    *
+    * The list is not touched until every element has been tested, so if the predicate throws
+    * the list is left unchanged. In parallel mode the predicate is called from several
+    * threads, in no particular order, so it must not have side effects.
+    *
+    * (ArrayList.removeIf() uses the same bitset idea, but sequentially and only for
+    * ArrayList; this can mark in parallel.)
+    *
+    * Lists without RandomAccess (e.g. LinkedList) already remove in O(1) through their
+    * iterator, so they just get the iterator loop.
+    * */
+
+    static final int PARALLEL_THRESHOLD = 1 << 15;
+    private static final int MIN_CHUNK = 1 << 13; // elements, a multiple of 64
+
+    private BulkFilter() {
+    }
+
+    /*
+    * Removes the elements that match the filter and returns how many were removed. Marks
+    * in parallel when the list is large enough.
+    * */
+    public static <T> int removeIf(List<T> list, Predicate<? super T> filter) {
+        return removeIf(list, filter, list.size() >= PARALLEL_THRESHOLD);
+    }
+
+    public static <T> int removeIf(List<T> list, Predicate<? super T> filter, boolean parallel) {
+        if(list instanceof CopyOnWriteArrayList) {
+            int[] removed = {0};
+            list.removeIf(e -> filter.test(e) && ++removed[0] > 0);
+            return removed[0];
+        }
+        if(!(list instanceof RandomAccess)) {
+            int removed = 0;
+            for(Iterator<T> i = list.iterator(); i.hasNext(); ) {
+                if(filter.test(i.next())) {
+                    i.remove();
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        int n = list.size();
+        long[] marks = mark(list, filter, parallel);
+        if(list.size() != n) {
+            throw new ConcurrentModificationException();
+        }
+
+        int removed = 0;
+        for(long word : marks) {
+            removed += Long.bitCount(word);
+        }
+        if(removed == 0) {
+            return 0;
+        }
+
+        if(!compactable(list)) {
+            Iterator<T> i = list.iterator();
+            for(int index = 0; index < n; index++) {
+                i.next();
+                if((marks[index >>> 6] & (1L << index)) != 0) {
+                    i.remove();
+                }
+            }
+            return removed;
+        }
+
+        // everything before the first match stays where it is
+        int write = 0;
+        while((marks[write >>> 6] & (1L << write)) == 0) {
+            write++;
+        }
+        for(int read = write + 1; read < n; read++) {
+            if((marks[read >>> 6] & (1L << read)) == 0) {
+                list.set(write++, list.get(read));
+            }
+        }
+        list.subList(write, n).clear();
+        return removed;
+    }
+
+    /*
+    * Whether set() and subList(...).clear() are known to work (and to be cheap).
+    * */
+    private static boolean compactable(List<?> list) {
+        return list.getClass() == ArrayList.class || list.getClass() == Vector.class;
+    }
+
+    private static <T> long[] mark(List<T> list, Predicate<? super T> filter, boolean parallel) {
+        int n = list.size();
+        long[] marks = new long[(n + 63) >>> 6];
+        int chunks = parallel ? Math.min(Runtime.getRuntime().availableProcessors() * 4, n / MIN_CHUNK) : 1;
+        chunks = Math.max(chunks, 1);
+        int wordsPerChunk = (marks.length + chunks - 1) / chunks;
+
+        IntStream range = IntStream.range(0, chunks);
+        (chunks > 1 ? range.parallel() : range).forEach(c -> {
+            int from = c * wordsPerChunk * 64;
+            int to = (int) Math.min(n, (long) (c + 1) * wordsPerChunk * 64);
+            for(int i = from; i < to; i++) {
+                if(filter.test(list.get(i))) {
+                    marks[i >>> 6] |= 1L << i;
+                }
+            }
+        });
+        return marks;
+    }
+}
@@ -0,0 +1,238 @@
+package lambdas;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class CachedSupplier<T> implements Supplier<T>, AutoCloseable {
+
+    /*
+    * A Supplier that hands out a remembered value and refreshes it in the background.
+    *
+    * Supplier<LocalTime> supTime = () -> LocalTime.now() asks the system clock on every
+    * get(). In a loop over millions of elements that adds up, and for many values (the time
+    * to the second, a config setting, a computed snapshot) a value a few milliseconds old is
+    * just as good. A CachedSupplier keeps the last value in a volatile field, so get() is one
+    * memory read: no lock, no call to the source, no matter how many threads read it.
+    *
+    * Two ways of refreshing:
+    *   - every(source, interval): a background thread calls the source at a fixed rate.
+    *     Readers never wait (except the very first get(), if the first value isn't there yet).
+    *   - refreshAfter(source, maxAge): nothing runs while nobody asks. The first get() after
+    *     the value got older than maxAge starts ONE background refresh and still returns the
+    *     old value straight away ("refresh ahead"); the readers see the new value when it's
+    *     ready.
+    *
+    * If the source throws during a background refresh (anything, Errors included) the old
+    * value is kept, the failure is counted and the last one is kept (see
+    * getRefreshFailures() and getLastRefreshFailure()); an every() supplier carries on
+    * refreshing at the next tick.
+    *
+    * instantClock()/localTimeClock() are coarse clocks: Instant.now()/LocalTime.now() read
+    * once per resolution instead of once per call.
+    *
+    * The background work runs on one shared daemon thread, so the source of an every()
+    * supplier should be quick. close() stops the refreshing and should always be called
+    * (try-with-resources). The scheduled task only holds its supplier weakly, so one that is
+    * dropped without close() stops once the garbage collector has collected it - but until
+    * then its source keeps being called.
+    * */
+
+    private static final ScheduledExecutorService REFRESHER = createRefresher();
+
+    private final Supplier<? extends T> source;
+    private final long maxAgeNanos;       // refreshAfter() only, 0 for every()
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private volatile Throwable lastRefreshFailure;
+    private volatile Value<T> current;
+    private volatile ScheduledFuture<?> schedule;
+
+    private CachedSupplier(Supplier<? extends T> source, long maxAgeNanos) {
+        this.source = Objects.requireNonNull(source);
+        this.maxAgeNanos = maxAgeNanos;
+    }
+
+    public static <T> CachedSupplier<T> every(Supplier<? extends T> source, Duration interval) {
+        long nanos = positive(interval);
+        CachedSupplier<T> supplier = new CachedSupplier<>(source, 0);
+        WeakRefresh task = new WeakRefresh(supplier);
+        supplier.schedule = task.future = REFRESHER.scheduleAtFixedRate(task, 0, nanos, TimeUnit.NANOSECONDS);
+        return supplier;
+    }
+
+    public static <T> CachedSupplier<T> refreshAfter(Supplier<? extends T> source, Duration maxAge) {
+        return new CachedSupplier<>(source, positive(maxAge));
+    }
+
+    /*
+    * Instant.now(), at most resolution old.
+    * */
+    public static CachedSupplier<Instant> instantClock(Duration resolution) {
+        return every(Instant::now, resolution);
+    }
+
+    /*
+    * LocalTime.now(), at most resolution old.
+    * */
+    public static CachedSupplier<LocalTime> localTimeClock(Duration resolution) {
+        return every(LocalTime::now, resolution);
+    }
+
+    @Override
+    public T get() {
+        Value<T> value = current;
+        if(value == null) {
+            return first();
+        }
+        if(maxAgeNanos > 0 && System.nanoTime() - value.time >= maxAgeNanos && refreshing.compareAndSet(false, true)) {
+            try {
+                REFRESHER.execute(() -> {
+                    try {
+                        refreshInBackground();
+                    } finally {
+                        refreshing.set(false);
+                    }
+                });
+            } catch(RuntimeException e) { // the refresher is shutting down
+                refreshing.set(false);
+            }
+        }
+        return value.value;
+    }
+
+    /*
+    * Nothing to serve yet: compute it on this thread (once, even if several threads get here).
+    * */
+    private synchronized T first() {
+        Value<T> value = current;
+        if(value == null) {
+            value = new Value<>(source.get(), System.nanoTime());
+            current = value;
+            refreshes.increment();
+        }
+        return value.value;
+    }
+
+    /*
+    * Computes a new value now, on the calling thread. If the source throws, the old value is
+    * kept and the failure is recorded like a failed background refresh, then rethrown.
+    * */
+    public void refresh() {
+        try {
+            current = new Value<>(source.get(), System.nanoTime());
+            refreshes.increment();
+        } catch(Throwable t) {
+            lastRefreshFailure = t;
+            refreshFailures.increment();
+            throw t;
+        }
+    }
+
+    /*
+    * A refresh on the background thread: whatever the source throws is recorded, never
+    * propagated, since an exception escaping a periodic task cancels it for good.
+    * */
+    private void refreshInBackground() {
+        try {
+            current = new Value<>(source.get(), System.nanoTime());
+            refreshes.increment();
+        } catch(Throwable t) {
+            lastRefreshFailure = t;
+            refreshFailures.increment();
+        }
+    }
+
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    public long getRefreshFailures() {
+        return refreshFailures.sum();
+    }
+
+    /*
+    * What the last failed refresh threw, or null.
+    * */
+    public Throwable getLastRefreshFailure() {
+        return lastRefreshFailure;
+    }
+
+    /*
+    * Stops the background refreshing; get() keeps returning the last value.
+    * */
+    @Override
+    public void close() {
+        ScheduledFuture<?> s = schedule;
+        if(s != null) {
+            s.cancel(false);
+        }
+    }
+
+    private static long positive(Duration duration) {
+        long nanos = duration.toNanos();
+        if(nanos <= 0) {
+            throw new IllegalArgumentException("not positive: " + duration);
+        }
+        return nanos;
+    }
+
+    private static ScheduledExecutorService createRefresher() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "cached-supplier-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /*
+    * The periodic task of an every() supplier. It holds the supplier weakly, so the shared
+    * scheduler doesn't keep a forgotten supplier alive, and cancels itself once it is gone.
+    * */
+    private static final class WeakRefresh implements Runnable {
+        private final WeakReference<CachedSupplier<?>> supplier;
+        volatile ScheduledFuture<?> future;
+
+        WeakRefresh(CachedSupplier<?> supplier) {
+            this.supplier = new WeakReference<>(supplier);
+        }
+
+        @Override
+        public void run() {
+            CachedSupplier<?> s = supplier.get();
+            if(s != null) {
+                s.refreshInBackground();
+                return;
+            }
+            ScheduledFuture<?> f = future;
+            if(f != null) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    /*
+    * The value and when it was computed, published together in one volatile write.
+    * */
+    private static final class Value<T> {
+        final T value;
+        final long time;
+
+        Value(T value, long time) {
+            this.value = value;
+            this.time = time;
+        }
+    }
+}
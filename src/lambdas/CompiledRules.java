@@ -0,0 +1,249 @@
+package lambdas;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+public class CompiledRules implements Predicate<String> {
+
+    /*
+    * One or more StringRule's compiled into a single matcher (see StringRule.compile()).
+    *
+    * ===== Aho-Corasick ======
+    * All the terms (contains/startsWith/endsWith texts) go into a trie, one char per edge.
+    * Every node of the trie also gets a "failure" link: the longest suffix of the text that
+    * leads to it which is also a path from the root. Following the trie edges and, when
+    * there is no edge, the failure links, the automaton reads the input one char at a time
+    * and is always at the node for the longest term prefix ending at that char. Every term
+    * ending there is reported, so ALL the terms are found in a single pass, whatever their
+    * number. Here the failure links are resolved up front, giving a table
+    * next[state][char] (a DFA), so reading a char is one array lookup.
+    *
+    * A term found ending at index i with length L starts at i - L + 1, so the same scan also
+    * answers startsWith (starts at 0) and endsWith (ends at the last char).
+    *
+    * Only the chars that appear in some term get a column in the table; all the others share
+    * column 0 (they can't be part of any term).
+    *
+    * A CompiledRules is immutable and can be used from several threads.
+    * */
+
+    private final StringRule[] rules;
+    private final int termCount;
+
+    private final int[] asciiClass = new int[128];
+    private final char[] otherChars;     // sorted chars >= 128 that appear in terms
+    private final int alphabet;          // number of char classes, class 0 = "not in any term"
+    private final int[] next;            // next[state * alphabet + class]
+    private final int[][] output;        // patterns ending in each state
+    private final int[] patternLength;
+    private final int[] containsTerm;    // term id for each pattern and kind, or -1
+    private final int[] startsWithTerm;
+    private final int[] endsWithTerm;
+
+    CompiledRules(List<StringRule> rules) {
+        Map<String, StringRule.Term> terms = new LinkedHashMap<>();
+        this.rules = new StringRule[rules.size()];
+        for(int i = 0; i < rules.size(); i++) {
+            this.rules[i] = rules.get(i).bind(terms);
+        }
+        termCount = terms.size();
+
+        // distinct texts are the patterns of the automaton
+        Map<String, Integer> patterns = new LinkedHashMap<>();
+        for(StringRule.Term term : terms.values()) {
+            patterns.putIfAbsent(term.text, patterns.size());
+        }
+        patternLength = new int[patterns.size()];
+        containsTerm = new int[patterns.size()];
+        startsWithTerm = new int[patterns.size()];
+        endsWithTerm = new int[patterns.size()];
+        Arrays.fill(containsTerm, -1);
+        Arrays.fill(startsWithTerm, -1);
+        Arrays.fill(endsWithTerm, -1);
+        for(StringRule.Term term : terms.values()) {
+            int pattern = patterns.get(term.text);
+            patternLength[pattern] = term.text.length();
+            if(term.kind == StringRule.Term.CONTAINS) {
+                containsTerm[pattern] = term.id;
+            } else if(term.kind == StringRule.Term.STARTS_WITH) {
+                startsWithTerm[pattern] = term.id;
+            } else {
+                endsWithTerm[pattern] = term.id;
+            }
+        }
+
+        // char classes
+        TreeSet<Character> others = new TreeSet<>();
+        int classes = 1;
+        for(String text : patterns.keySet()) {
+            for(int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if(c < 128) {
+                    if(asciiClass[c] == 0) {
+                        asciiClass[c] = classes++;
+                    }
+                } else {
+                    others.add(c);
+                }
+            }
+        }
+        otherChars = new char[others.size()];
+        int n = 0;
+        for(char c : others) {
+            otherChars[n++] = c;
+        }
+        alphabet = classes + otherChars.length;
+
+        // trie
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        trie.add(new int[alphabet]);
+        ends.add(new ArrayList<>());
+        for(Map.Entry<String, Integer> pattern : patterns.entrySet()) {
+            int state = 0;
+            String text = pattern.getKey();
+            for(int i = 0; i < text.length(); i++) {
+                int c = charClass(text.charAt(i));
+                if(trie.get(state)[c] == 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(new int[alphabet]);
+                    ends.add(new ArrayList<>());
+                }
+                state = trie.get(state)[c];
+            }
+            ends.get(state).add(pattern.getValue());
+        }
+
+        // failure links, breadth first, folded into a full transition table
+        int states = trie.size();
+        next = new int[states * alphabet];
+        output = new int[states][];
+        int[] fail = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for(int c = 0; c < alphabet; c++) {
+            int child = trie.get(0)[c];
+            next[c] = child;
+            if(child != 0) {
+                queue.add(child);
+            }
+        }
+        while(!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> found = new ArrayList<>(ends.get(state));
+            int[] inherited = output[fail[state]];
+            if(inherited != null) {
+                for(int pattern : inherited) {
+                    found.add(pattern);
+                }
+            }
+            output[state] = found.isEmpty() ? null : found.stream().mapToInt(Integer::intValue).toArray();
+
+            for(int c = 0; c < alphabet; c++) {
+                int child = trie.get(state)[c];
+                if(child != 0) {
+                    fail[child] = next[fail[state] * alphabet + c];
+                    next[state * alphabet + c] = child;
+                    queue.add(child);
+                } else {
+                    next[state * alphabet + c] = next[fail[state] * alphabet + c];
+                }
+            }
+        }
+    }
+
+    private int charClass(char c) {
+        if(c < 128) {
+            return asciiClass[c];
+        }
+        int i = Arrays.binarySearch(otherChars, c);
+        return i < 0 ? 0 : alphabet - otherChars.length + i;
+    }
+
+    /*
+    * One pass over s; found[term id] is set for every term found where its kind wants it.
+    * */
+    private boolean[] scan(String s) {
+        boolean[] found = new boolean[termCount];
+        int length = s.length();
+        int state = 0;
+        for(int i = 0; i < length; i++) {
+            state = next[state * alphabet + charClass(s.charAt(i))];
+            int[] patterns = output[state];
+            if(patterns != null) {
+                for(int pattern : patterns) {
+                    if(containsTerm[pattern] >= 0) {
+                        found[containsTerm[pattern]] = true;
+                    }
+                    if(startsWithTerm[pattern] >= 0 && i + 1 == patternLength[pattern]) {
+                        found[startsWithTerm[pattern]] = true;
+                    }
+                    if(endsWithTerm[pattern] >= 0 && i == length - 1) {
+                        found[endsWithTerm[pattern]] = true;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /*
+    * true if any of the rules matches (for a single compiled rule: if it matches).
+    * */
+    @Override
+    public boolean test(String s) {
+        int length = s.length();
+        boolean unknown = false;
+        for(StringRule rule : rules) {
+            int result = rule.evaluateLength(length);
+            if(result == StringRule.TRUE) {
+                return true;
+            }
+            unknown |= result == StringRule.UNKNOWN;
+        }
+        if(!unknown) {
+            return false;
+        }
+
+        boolean[] found = scan(s);
+        for(StringRule rule : rules) {
+            if(rule.evaluate(length, found)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+    * Which rules (by their index in compileAll()) match s.
+    * */
+    public BitSet matches(String s) {
+        int length = s.length();
+        BitSet result = new BitSet(rules.length);
+        boolean[] found = null;
+        for(int i = 0; i < rules.length; i++) {
+            int byLength = rules[i].evaluateLength(length);
+            if(byLength == StringRule.UNKNOWN) {
+                if(found == null) {
+                    found = scan(s);
+                }
+                result.set(i, rules[i].evaluate(length, found));
+            } else {
+                result.set(i, byLength == StringRule.TRUE);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledRules" + Arrays.toString(rules);
+    }
+}
@@ -0,0 +1,279 @@
+package lambdas;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+public class ConsoleSink implements Consumer<String>, AutoCloseable {
+
+    /*
+    * A Consumer<String> that prints lines asynchronously, in batches.
+    *
+    * names.forEach(System.out::println) takes the PrintStream's lock and flushes the stream
+    * for every single line. With a parallel stream all the threads queue up on that lock, so
+    * the printing runs one line at a time anyway. Here accept() only puts the line in a
+    * bounded ring buffer and returns; ONE writer thread takes the lines out in batches and
+    * writes them through a big buffer, flushing only when it has nothing more to write.
+    *
+    *   try(ConsoleSink sink = ConsoleSink.toStdout()) {
+    *       names.parallelStream().forEach(sink);
+    *   } // close() waits until everything has been written
+    *
+    * ===== The ring buffer =====
+    * An array of slots plus a sequence number per slot (a bounded queue after Dmitry Vyukov).
+    * A producer claims a position with a compareAndSet on the tail counter, fills the slot and
+    * then publishes it by bumping the slot's sequence; the writer thread only reads slots
+    * whose sequence says they are published. No locks: producers only compete for the tail
+    * counter, never for the output.
+    *
+    * ===== Backpressure =====
+    * When the writer can't keep up the buffer fills up. BLOCK makes accept() wait for a free
+    * slot (nothing is lost); DROP throws the line away and counts it (getDropped()), for
+    * output that must never slow the program down. If writing fails (e.g. a broken pipe
+    * when the output goes to `head`), the writer thread stops and accept(), flush() and
+    * close() throw an UncheckedIOException instead of waiting for it forever.
+    *
+    * flush() waits until everything accepted before it has been written. close() does the
+    * same and stops the writer thread, but doesn't close the underlying stream (it is
+    * usually stdout). Lines from one thread keep their order; lines from different threads
+    * are interleaved in the order they got their slots. Anything printed with System.out
+    * directly may come out of order with respect to the sink until flush().
+    * */
+
+    public enum Overflow {
+        BLOCK, DROP
+    }
+
+    private static final int DEFAULT_CAPACITY = 1 << 14;
+    private static final int WRITE_BUFFER = 1 << 16;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final AtomicReferenceArray<String> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // next position to claim
+    private long head;                                // next position to write, writer thread only
+    private volatile long written;                    // positions < written are written and flushed
+
+    private final Overflow overflow;
+    private final Writer out;
+    private final String lineSeparator = System.lineSeparator();
+    private final Thread writer;
+    private volatile boolean writerIdle;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private final LongAdder dropped = new LongAdder();
+
+    public ConsoleSink(OutputStream out, int capacity, Overflow overflow) {
+        if(capacity < 2) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.overflow = overflow;
+        this.out = new BufferedWriter(new OutputStreamWriter(out, Charset.defaultCharset()), WRITE_BUFFER);
+        this.writer = new Thread(this::writeLoop, "console-sink-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static ConsoleSink toStdout() {
+        return toStdout(DEFAULT_CAPACITY, Overflow.BLOCK);
+    }
+
+    /*
+    * Writes to the stdout file descriptor directly, not through System.out and its lock.
+    * */
+    public static ConsoleSink toStdout(int capacity, Overflow overflow) {
+        return new ConsoleSink(new FileOutputStream(FileDescriptor.out), capacity, overflow);
+    }
+
+    @Override
+    public void accept(String line) {
+        if(closed) {
+            throw new IllegalStateException("closed");
+        }
+        if(failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+        long position;
+        while((position = offer(line)) < 0) {
+            if(overflow == Overflow.DROP) {
+                dropped.increment();
+                return;
+            }
+            checkWriter(); // nobody else is going to free a slot
+            wakeWriter();
+            LockSupport.parkNanos(1_000);
+            if(closed) {
+                throw new IllegalStateException("closed");
+            }
+        }
+        if(closed) {
+            // close() ran meanwhile: the writer may have stopped before it saw this line
+            awaitWriter();
+            if(written <= position) {
+                throw new IllegalStateException("closed before the line could be written");
+            }
+            return;
+        }
+        if(writerIdle) {
+            wakeWriter();
+        }
+    }
+
+    /*
+    * Claims a slot for the line; returns its position, or -1 if the buffer is full.
+    * */
+    private long offer(String line) {
+        while(true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            if(sequence == position) {
+                if(tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, line);
+                    sequences.set(index, position + 1); // publish
+                    return position;
+                }
+            } else if(sequence < position) {
+                return -1; // full: the writer hasn't freed this slot yet
+            }
+            // else another producer took this position; try the next one
+        }
+    }
+
+    /*
+    * Throws if the writer thread has stopped because writing failed (or died otherwise).
+    * */
+    private void checkWriter() {
+        if(failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+        if(!writer.isAlive()) {
+            throw new IllegalStateException("the writer thread has stopped");
+        }
+    }
+
+    private void awaitWriter() {
+        boolean interrupted = false;
+        while(writer.isAlive()) {
+            try {
+                writer.join();
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if(failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /*
+    * Waits until every line accepted before this call has been written and flushed.
+    * */
+    public void flush() {
+        long target = tail.get();
+        while(written < target) {
+            if(failure != null || !writer.isAlive()) {
+                break;
+            }
+            wakeWriter();
+            LockSupport.parkNanos(100_000);
+        }
+        if(failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void close() {
+        if(closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            wakeWriter();
+            try {
+                writer.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void wakeWriter() {
+        LockSupport.unpark(writer);
+    }
+
+    private void writeLoop() {
+        try {
+            while(true) {
+                int count = drain();
+                if(count > 0) {
+                    continue;
+                }
+                // nothing left: make it visible, then sleep until a producer wakes us up
+                out.flush();
+                written = head;
+                if(closed && tail.get() == head) {
+                    return;
+                }
+                writerIdle = true;
+                if(tail.get() == head && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerIdle = false;
+            }
+        } catch(IOException e) {
+            failure = e;
+        }
+    }
+
+    /*
+    * Writes the published lines (up to a buffer's worth) and frees their slots.
+    * */
+    private int drain() throws IOException {
+        int count = 0;
+        while(count <= mask) {
+            int index = (int) head & mask;
+            if(sequences.get(index) != head + 1) {
+                break; // not published yet
+            }
+            String line = slots.get(index);
+            slots.lazySet(index, null);
+            sequences.set(index, head + mask + 1); // free for the next lap
+            head++;
+            count++;
+            out.write(line == null ? "null" : line);
+            out.write(lineSeparator);
+        }
+        return count;
+    }
+}
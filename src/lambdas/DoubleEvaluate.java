@@ -0,0 +1,10 @@
+package lambdas;
+
+/*
+* Evaluate<T> for double's: the value is passed as a primitive double, so a lambda like
+* i -> i < 0 doesn't box it into a Double (similar to DoublePredicate).
+* */
+@FunctionalInterface
+public interface DoubleEvaluate {
+    boolean isNegative(double value);
+}
@@ -0,0 +1,594 @@
+package lambdas;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public final class FusedPipeline<T, R> {
+
+    /*
+    * A chain of map/filter/peek stages that runs as one piece of code.
+    *
+    * f1.andThen(f2).andThen(f3)... or p1.and(p2).and(p3)... builds a chain of small objects
+    * that all call each other through the same few lines in Function.andThen/Predicate.and.
+    * Once an application has a few such chains, those lines have seen many different lambdas
+    * ("megamorphic" call sites) and the JIT stops inlining across the chain: every stage
+    * becomes a real interface call.
+    *
+    * build() writes a small class for the pipeline instead, with one call site per stage:
+    *
+    *   FusedPipeline<String, Integer> lengths = FusedPipeline.<String>builder()
+    *           .filter(s -> s.startsWith("Mr."))
+    *           .map(String::length)
+    *           .filter(n -> n > 10)
+    *           .build();
+    *   lengths.forEach(names, n -> total += n);
+    *
+    * The generated class keeps the stages in static final fields and has a loop (drain) that
+    * calls them one after the other, so every call site only ever sees one lambda and the
+    * JIT can inline the whole chain into the loop body. A hidden class is used
+    * (Lookup.defineHiddenClassWithClassData): it has no name anybody can refer to and is
+    * unloaded with its pipeline. LambdaMetafactory can't be used here because it only wraps
+    * one method into a class; it can't fuse several lambdas into one method.
+    *
+    * The bytecode only depends on the shape of the pipeline (e.g. filter, map, filter), so it
+    * is generated once per shape and cached. Every build() still defines its own class from
+    * those bytes: pipelines sharing one class would share its call sites again. So build
+    * once and reuse the pipeline, don't build one per element.
+    * */
+
+    static final int MAX_STAGES = 1024;
+
+    private static final Map<String, byte[]> SHAPES = new ConcurrentHashMap<>();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final String shape;
+    private final Body body;
+
+    private FusedPipeline(String shape, Body body) {
+        this.shape = shape;
+        this.body = body;
+    }
+
+    public static <T> Builder<T, T> builder() {
+        return new Builder<>(Collections.emptyList());
+    }
+
+    /*
+    * Runs one element through the pipeline; the sink gets the result unless a filter
+    * rejected it. Returns whether the sink was called.
+    * */
+    @SuppressWarnings("unchecked")
+    public boolean apply(T t, Consumer<? super R> sink) {
+        return body.push(t, (Consumer<Object>) sink);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Iterable<? extends T> source, Consumer<? super R> sink) {
+        body.drain(source.iterator(), (Consumer<Object>) sink);
+    }
+
+    public List<R> toList(Iterable<? extends T> source) {
+        List<R> result = new ArrayList<>();
+        forEach(source, result::add);
+        return result;
+    }
+
+    /*
+    * One letter per stage: M (map), F (filter), P (peek).
+    * */
+    public String shape() {
+        return shape;
+    }
+
+    static int cachedShapes() {
+        return SHAPES.size();
+    }
+
+    @Override
+    public String toString() {
+        return "FusedPipeline{" + shape + '}';
+    }
+
+    /*
+    * Implemented by the generated classes; the Consumer and Iterator are raw because the
+    * generated code doesn't know about generics.
+    * */
+    interface Body {
+        boolean push(Object x, Consumer<Object> sink);
+
+        void drain(Iterator<?> source, Consumer<Object> sink);
+    }
+
+    /*
+    * Immutable: every call returns a new Builder, so a half built pipeline can be shared and
+    * continued in different ways.
+    * */
+    public static final class Builder<T, R> {
+        private final List<Stage> stages;
+
+        private Builder(List<Stage> stages) {
+            this.stages = stages;
+        }
+
+        public <V> Builder<T, V> map(Function<? super R, ? extends V> mapper) {
+            return new Builder<>(append(Kind.MAP, mapper));
+        }
+
+        public Builder<T, R> filter(Predicate<? super R> predicate) {
+            return new Builder<>(append(Kind.FILTER, predicate));
+        }
+
+        public Builder<T, R> peek(Consumer<? super R> action) {
+            return new Builder<>(append(Kind.PEEK, action));
+        }
+
+        private List<Stage> append(Kind kind, Object function) {
+            Objects.requireNonNull(function);
+            if(stages.size() == MAX_STAGES) {
+                throw new IllegalStateException("more than " + MAX_STAGES + " stages");
+            }
+            List<Stage> more = new ArrayList<>(stages);
+            more.add(new Stage(kind, function));
+            return more;
+        }
+
+        public FusedPipeline<T, R> build() {
+            StringBuilder shape = new StringBuilder(stages.size());
+            Object[] functions = new Object[stages.size()];
+            for(int i = 0; i < functions.length; i++) {
+                shape.append(stages.get(i).kind.letter);
+                functions[i] = stages.get(i).function;
+            }
+            String key = shape.toString();
+            byte[] bytes = SHAPES.computeIfAbsent(key, Generator::generate);
+            try {
+                MethodHandles.Lookup hidden = LOOKUP.defineHiddenClassWithClassData(bytes, functions, true);
+                Body body = (Body) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+                return new FusedPipeline<>(key, body);
+            } catch(RuntimeException | Error e) {
+                throw e;
+            } catch(Throwable e) {
+                throw new IllegalStateException("could not define the pipeline class for " + key, e);
+            }
+        }
+    }
+
+    private enum Kind {
+        MAP('M', "java/util/function/Function"),
+        FILTER('F', "java/util/function/Predicate"),
+        PEEK('P', "java/util/function/Consumer");
+
+        final char letter;
+        final String type;
+
+        Kind(char letter, String type) {
+            this.letter = letter;
+            this.type = type;
+        }
+
+        static Kind of(char letter) {
+            for(Kind kind : values()) {
+                if(kind.letter == letter) {
+                    return kind;
+                }
+            }
+            throw new IllegalArgumentException("stage " + letter);
+        }
+    }
+
+    private static final class Stage {
+        final Kind kind;
+        final Object function;
+
+        Stage(Kind kind, Object function) {
+            this.kind = kind;
+            this.function = function;
+        }
+    }
+
+    /*
+    * Writes the class file for one shape by hand (no bytecode library needed). For the shape
+    * "FM" it is the same as compiling:
+    *
+    *   final class FusedPipeline$Fused implements FusedPipeline.Body {
+    *       private static final Predicate s0;
+    *       private static final Function s1;
+    *       static {
+    *           Object[] d = MethodHandles.classData(MethodHandles.lookup(), "_", Object[].class);
+    *           s0 = (Predicate) d[0];
+    *           s1 = (Function) d[1];
+    *       }
+    *       public boolean push(Object x, Consumer sink) {
+    *           if(!s0.test(x)) return false;
+    *           x = s1.apply(x);
+    *           sink.accept(x);
+    *           return true;
+    *       }
+    *       public void drain(Iterator it, Consumer sink) {
+    *           while(it.hasNext()) {
+    *               Object x = it.next();
+    *               if(!s0.test(x)) continue;
+    *               x = s1.apply(x);
+    *               sink.accept(x);
+    *           }
+    *       }
+    *   }
+    *
+    * The class file version is 61 (Java 17), so methods with branches need a StackMapTable.
+    * Every branch target has the same locals as the method entry (x is dead at the loop
+    * head) and an empty stack, so each one is a "same" frame.
+    * */
+    private static final class Generator {
+        private static final String NAME = "lambdas/FusedPipeline$Fused";
+        private static final String BODY = "lambdas/FusedPipeline$Body";
+        private static final String OBJECT = "java/lang/Object";
+        private static final String CONSUMER = "java/util/function/Consumer";
+        private static final String ITERATOR = "java/util/Iterator";
+
+        private final ConstantPool pool = new ConstantPool();
+        private final Kind[] kinds;
+
+        private Generator(String shape) {
+            kinds = new Kind[shape.length()];
+            for(int i = 0; i < kinds.length; i++) {
+                kinds[i] = Kind.of(shape.charAt(i));
+            }
+        }
+
+        static byte[] generate(String shape) {
+            try {
+                return new Generator(shape).write();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e); // a ByteArrayOutputStream doesn't throw
+            }
+        }
+
+        private byte[] write() throws IOException {
+            // the methods first: they fill the constant pool, which comes before them in the file
+            List<byte[]> methods = List.of(
+                    method(0x0001, "<init>", "()V", constructor(), 1, 1),
+                    method(0x0008, "<clinit>", "()V", staticInitializer(), 3, 1),
+                    method(0x0001, "push", "(Ljava/lang/Object;Ljava/util/function/Consumer;)Z", push(), 2, 3),
+                    method(0x0001, "drain", "(Ljava/util/Iterator;Ljava/util/function/Consumer;)V", drain(), 2, 4));
+            int thisClass = pool.classRef(NAME);
+            int superClass = pool.classRef(OBJECT);
+            int bodyInterface = pool.classRef(BODY);
+            int[][] fields = new int[kinds.length][];
+            for(int i = 0; i < kinds.length; i++) {
+                fields[i] = new int[]{pool.utf8("s" + i), pool.utf8(descriptor(kinds[i]))};
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(61);
+            pool.writeTo(out);
+            out.writeShort(0x0031); // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(bodyInterface);
+            out.writeShort(fields.length);
+            for(int[] field : fields) {
+                out.writeShort(0x001A); // private static final
+                out.writeShort(field[0]);
+                out.writeShort(field[1]);
+                out.writeShort(0);
+            }
+            out.writeShort(methods.size());
+            for(byte[] m : methods) {
+                out.write(m);
+            }
+            out.writeShort(0); // no class attributes
+            return bytes.toByteArray();
+        }
+
+        private static String descriptor(Kind kind) {
+            return "L" + kind.type + ";";
+        }
+
+        private Code constructor() {
+            Code code = new Code();
+            code.op(0x2A); // aload_0
+            code.op(0xB7).u2(pool.methodRef(OBJECT, "<init>", "()V")); // invokespecial
+            code.op(0xB1); // return
+            return code;
+        }
+
+        private Code staticInitializer() {
+            Code code = new Code();
+            code.op(0xB8).u2(pool.methodRef("java/lang/invoke/MethodHandles", "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;"));
+            code.op(0x13).u2(pool.string("_")); // ldc_w, the name classData ignores for class data
+            code.op(0x13).u2(pool.classRef("[Ljava/lang/Object;"));
+            code.op(0xB8).u2(pool.methodRef("java/lang/invoke/MethodHandles", "classData",
+                    "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;"));
+            code.op(0xC0).u2(pool.classRef("[Ljava/lang/Object;")); // checkcast
+            code.op(0x4B); // astore_0
+            for(int i = 0; i < kinds.length; i++) {
+                code.op(0x2A); // aload_0
+                code.op(0x11).u2(i); // sipush
+                code.op(0x32); // aaload
+                code.op(0xC0).u2(pool.classRef(kinds[i].type));
+                code.op(0xB3).u2(stageField(i)); // putstatic
+            }
+            code.op(0xB1);
+            return code;
+        }
+
+        private Code push() {
+            Code code = new Code();
+            for(int i = 0; i < kinds.length; i++) {
+                callStage(code, i, 1);
+                if(kinds[i] == Kind.FILTER) {
+                    int passed = code.jump(0x9A); // ifne
+                    code.op(0x03).op(0xAC); // iconst_0, ireturn
+                    code.target(passed);
+                }
+            }
+            code.op(0x2C).op(0x2B); // aload_2, aload_1
+            code.invokeInterface(pool.interfaceMethodRef(CONSUMER, "accept", "(Ljava/lang/Object;)V"), 2);
+            code.op(0x04).op(0xAC); // iconst_1, ireturn
+            return code;
+        }
+
+        private Code drain() {
+            Code code = new Code();
+            int loop = code.here();
+            code.op(0x2B); // aload_1
+            code.invokeInterface(pool.interfaceMethodRef(ITERATOR, "hasNext", "()Z"), 1);
+            int exit = code.jump(0x99); // ifeq
+            code.op(0x2B);
+            code.invokeInterface(pool.interfaceMethodRef(ITERATOR, "next", "()Ljava/lang/Object;"), 1);
+            code.op(0x4E); // astore_3
+            for(int i = 0; i < kinds.length; i++) {
+                callStage(code, i, 3);
+                if(kinds[i] == Kind.FILTER) {
+                    code.jumpBack(0x99, loop); // ifeq: rejected, next element
+                }
+            }
+            code.op(0x2C).op(0x2D); // aload_2, aload_3
+            code.invokeInterface(pool.interfaceMethodRef(CONSUMER, "accept", "(Ljava/lang/Object;)V"), 2);
+            code.jumpBack(0xA7, loop); // goto
+            code.target(exit);
+            code.op(0xB1);
+            return code;
+        }
+
+        /*
+        * Calls stage i on the local variable x; a map stores its result back into x, a filter
+        * leaves its boolean on the stack.
+        * */
+        private void callStage(Code code, int i, int x) {
+            code.op(0xB2).u2(stageField(i)); // getstatic
+            code.op(0x19).op(x); // aload x
+            switch(kinds[i]) {
+                case MAP:
+                    code.invokeInterface(pool.interfaceMethodRef(kinds[i].type, "apply", "(Ljava/lang/Object;)Ljava/lang/Object;"), 2);
+                    code.op(0x3A).op(x); // astore x
+                    break;
+                case FILTER:
+                    code.invokeInterface(pool.interfaceMethodRef(kinds[i].type, "test", "(Ljava/lang/Object;)Z"), 2);
+                    break;
+                case PEEK:
+                    code.invokeInterface(pool.interfaceMethodRef(kinds[i].type, "accept", "(Ljava/lang/Object;)V"), 2);
+                    break;
+            }
+        }
+
+        private int stageField(int i) {
+            return pool.fieldRef(NAME, "s" + i, descriptor(kinds[i]));
+        }
+
+        private byte[] method(int access, String name, String descriptor, Code code, int maxStack, int maxLocals) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(access);
+            out.writeShort(pool.utf8(name));
+            out.writeShort(pool.utf8(descriptor));
+            out.writeShort(1);
+
+            byte[] instructions = code.toByteArray();
+            byte[] frames = code.stackMapTable();
+            out.writeShort(pool.utf8("Code"));
+            int stackMapLength = frames == null ? 0 : 6 + frames.length;
+            out.writeInt(12 + instructions.length + stackMapLength);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(instructions.length);
+            out.write(instructions);
+            out.writeShort(0); // no exception table
+            if(frames == null) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(1);
+                out.writeShort(pool.utf8("StackMapTable"));
+                out.writeInt(frames.length);
+                out.write(frames);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /*
+    * The instructions of one method, plus the branch targets it needs frames for.
+    * */
+    private static final class Code {
+        private byte[] bytes = new byte[64];
+        private int size;
+        private final List<Integer> targets = new ArrayList<>();
+
+        Code op(int b) {
+            if(size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) b;
+            return this;
+        }
+
+        Code u2(int value) {
+            return op(value >>> 8).op(value);
+        }
+
+        /*
+        * Marks the current position as the target of backward jumps.
+        * */
+        int here() {
+            targets.add(size);
+            return size;
+        }
+
+        void invokeInterface(int method, int argumentSlots) {
+            op(0xB9).u2(method).op(argumentSlots).op(0);
+        }
+
+        /*
+        * A forward jump; returns where it is, so target() can fill in its offset.
+        * */
+        int jump(int opcode) {
+            int at = size;
+            op(opcode).u2(0);
+            return at;
+        }
+
+        void jumpBack(int opcode, int target) {
+            int offset = target - size;
+            op(opcode).u2(offset & 0xFFFF);
+        }
+
+        /*
+        * Makes the forward jump at the given position land here.
+        * */
+        void target(int jump) {
+            int offset = size - jump;
+            bytes[jump + 1] = (byte) (offset >>> 8);
+            bytes[jump + 2] = (byte) offset;
+            targets.add(size);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        /*
+        * One same_frame_extended per distinct target, in order; null without branches.
+        * */
+        byte[] stackMapTable() {
+            if(targets.isEmpty()) {
+                return null;
+            }
+            int[] sorted = targets.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+            byte[] table = new byte[2 + 3 * sorted.length];
+            table[0] = (byte) (sorted.length >>> 8);
+            table[1] = (byte) sorted.length;
+            for(int i = 0; i < sorted.length; i++) {
+                int delta = i == 0 ? sorted[0] : sorted[i] - sorted[i - 1] - 1;
+                table[2 + 3 * i] = (byte) 251;
+                table[3 + 3 * i] = (byte) (delta >>> 8);
+                table[4 + 3 * i] = (byte) delta;
+            }
+            return table;
+        }
+    }
+
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int next = 1;
+
+        int utf8(String s) {
+            return entry("U" + s, () -> {
+                out.writeByte(1);
+                out.writeUTF(s);
+            });
+        }
+
+        int string(String s) {
+            int value = utf8(s);
+            return entry("S" + s, () -> {
+                out.writeByte(8);
+                out.writeShort(value);
+            });
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return entry("C" + internalName, () -> {
+                out.writeByte(7);
+                out.writeShort(name);
+            });
+        }
+
+        int fieldRef(String owner, String name, String descriptor) {
+            return memberRef(9, owner, name, descriptor);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return memberRef(10, owner, name, descriptor);
+        }
+
+        int interfaceMethodRef(String owner, String name, String descriptor) {
+            return memberRef(11, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            int ownerClass = classRef(owner);
+            int nameAndType = nameAndType(name, descriptor);
+            return entry(tag + owner + "." + name + descriptor, () -> {
+                out.writeByte(tag);
+                out.writeShort(ownerClass);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            int n = utf8(name);
+            int d = utf8(descriptor);
+            return entry("N" + name + ":" + descriptor, () -> {
+                out.writeByte(12);
+                out.writeShort(n);
+                out.writeShort(d);
+            });
+        }
+
+        private int entry(String key, Writer writer) {
+            Integer index = entries.get(key);
+            if(index != null) {
+                return index;
+            }
+            try {
+                writer.write();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            entries.put(key, next);
+            return next++;
+        }
+
+        void writeTo(DataOutputStream file) throws IOException {
+            file.writeShort(next);
+            bytes.writeTo(file);
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package lambdas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+public final class Instrumented {
+
+    /*
+    * Named counters around lambdas, to find the slow stage of a pipeline.
+    *
+    *   Predicate<String> isMr = Instrumented.predicate("isMr", s -> s.startsWith("Mr."));
+    *   Function<String, Integer> length = Instrumented.function("length", String::length);
+    *   names.stream().filter(isMr).map(length)...
+    *   System.out.println(Instrumented.report());
+    *
+    * For every name (a "stage") it records:
+    *   - how often it was called and how often it threw.
+    *   - for predicates: how often it returned true and false.
+    *   - how long the calls took, in a histogram.
+    * Wrapping several lambdas with the same name adds them up into one stage.
+    *
+    * ===== Latency histogram =====
+    * Like HdrHistogram: the buckets get wider as the values grow, so the relative error
+    * stays under about 6% from nanoseconds to hours, in a fixed 960 counters. Values
+    * below 32ns get a bucket each; above that every power of 2 is split into 16 buckets.
+    * Recording is an increment in an array, no allocation. Every thread writes into one of
+    * several copies of the array (a "stripe", picked by thread id) so that threads don't
+    * fight over the same counters; snapshot() adds the stripes up. The other counters are
+    * LongAdders, which are striped the same way internally.
+    *
+    * ===== Switching it off =====
+    * Run with -Dlambdas.instrument=false and every wrapper method returns the lambda it was
+    * given: no wrapper, no timing, nothing to pay at all. The flag is read once, at startup.
+    *
+    * ===== JDK Flight Recorder =====
+    * While a recording runs, every stage is reported once a second as a
+    * lambdas.StageStatistics event (totals so far and percentiles). A lambdas.StageInvocation
+    * event per call is also available but disabled by default, since it costs a lot more;
+    * enable it in the recording settings to see individual slow calls.
+    * */
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("lambdas.instrument", "true"));
+
+    private static final Map<String, Stage> STAGES = new ConcurrentHashMap<>();
+
+    static {
+        if(ENABLED) {
+            FlightRecorder.addPeriodicEvent(StageStatistics.class, Instrumented::emitStatistics);
+        }
+    }
+
+    private Instrumented() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static <T> Predicate<T> predicate(String name, Predicate<T> predicate) {
+        if(!ENABLED) {
+            return predicate;
+        }
+        Stage stage = stage(name, Kind.PREDICATE);
+        return t -> {
+            long start = System.nanoTime();
+            boolean passed;
+            try {
+                passed = predicate.test(t);
+            } catch(Throwable e) {
+                stage.record(start, Outcome.ERROR);
+                throw e;
+            }
+            stage.record(start, passed ? Outcome.PASSED : Outcome.FAILED);
+            return passed;
+        };
+    }
+
+    public static <T, R> Function<T, R> function(String name, Function<T, R> function) {
+        if(!ENABLED) {
+            return function;
+        }
+        Stage stage = stage(name, Kind.FUNCTION);
+        return t -> {
+            long start = System.nanoTime();
+            R result;
+            try {
+                result = function.apply(t);
+            } catch(Throwable e) {
+                stage.record(start, Outcome.ERROR);
+                throw e;
+            }
+            stage.record(start, Outcome.RETURNED);
+            return result;
+        };
+    }
+
+    public static <T, U, R> BiFunction<T, U, R> biFunction(String name, BiFunction<T, U, R> function) {
+        if(!ENABLED) {
+            return function;
+        }
+        Stage stage = stage(name, Kind.FUNCTION);
+        return (t, u) -> {
+            long start = System.nanoTime();
+            R result;
+            try {
+                result = function.apply(t, u);
+            } catch(Throwable e) {
+                stage.record(start, Outcome.ERROR);
+                throw e;
+            }
+            stage.record(start, Outcome.RETURNED);
+            return result;
+        };
+    }
+
+    public static <T> Consumer<T> consumer(String name, Consumer<T> consumer) {
+        if(!ENABLED) {
+            return consumer;
+        }
+        Stage stage = stage(name, Kind.CONSUMER);
+        return t -> {
+            long start = System.nanoTime();
+            try {
+                consumer.accept(t);
+            } catch(Throwable e) {
+                stage.record(start, Outcome.ERROR);
+                throw e;
+            }
+            stage.record(start, Outcome.RETURNED);
+        };
+    }
+
+    public static <T, U> BiConsumer<T, U> biConsumer(String name, BiConsumer<T, U> consumer) {
+        if(!ENABLED) {
+            return consumer;
+        }
+        Stage stage = stage(name, Kind.CONSUMER);
+        return (t, u) -> {
+            long start = System.nanoTime();
+            try {
+                consumer.accept(t, u);
+            } catch(Throwable e) {
+                stage.record(start, Outcome.ERROR);
+                throw e;
+            }
+            stage.record(start, Outcome.RETURNED);
+        };
+    }
+
+    public static <T> Supplier<T> supplier(String name, Supplier<T> supplier) {
+        if(!ENABLED) {
+            return supplier;
+        }
+        Stage stage = stage(name, Kind.SUPPLIER);
+        return () -> {
+            long start = System.nanoTime();
+            T result;
+            try {
+                result = supplier.get();
+            } catch(Throwable e) {
+                stage.record(start, Outcome.ERROR);
+                throw e;
+            }
+            stage.record(start, Outcome.RETURNED);
+            return result;
+        };
+    }
+
+    private static Stage stage(String name, Kind kind) {
+        Stage stage = STAGES.computeIfAbsent(name, n -> new Stage(n, kind));
+        if(stage.kind != kind) {
+            throw new IllegalArgumentException("stage " + name + " is a " + stage.kind + ", not a " + kind);
+        }
+        return stage;
+    }
+
+    /*
+    * The counters of every stage, ordered by name. The stripes are added up while other
+    * threads may still be recording, so the numbers of one stage can be off by the calls
+    * in flight.
+    * */
+    public static List<StageSnapshot> snapshot() {
+        List<StageSnapshot> snapshots = new ArrayList<>();
+        for(Stage stage : STAGES.values()) {
+            snapshots.add(stage.snapshot());
+        }
+        snapshots.sort(Comparator.comparing(StageSnapshot::getName));
+        return snapshots;
+    }
+
+    public static StageSnapshot snapshot(String name) {
+        Stage stage = STAGES.get(name);
+        return stage == null ? null : stage.snapshot();
+    }
+
+    /*
+    * snapshot() as a table, one line per stage, latencies in microseconds.
+    * */
+    public static String report() {
+        StringBuilder report = new StringBuilder(String.format("%-20s %-9s %12s %8s %8s %10s %10s %10s %10s%n",
+                "stage", "kind", "calls", "pass%", "errors", "mean us", "p50 us", "p99 us", "max us"));
+        for(StageSnapshot s : snapshot()) {
+            report.append(String.format("%-20s %-9s %12d %8s %8d %10.2f %10.2f %10.2f %10.2f%n",
+                    s.getName(), s.getKind(), s.getInvocations(),
+                    s.getKind() == Kind.PREDICATE ? String.format("%.1f", s.getPassRatio() * 100) : "-",
+                    s.getErrors(), s.getMeanNanos() / 1e3, s.getPercentileNanos(50) / 1e3,
+                    s.getPercentileNanos(99) / 1e3, s.getMaxNanos() / 1e3));
+        }
+        return report.toString();
+    }
+
+    /*
+    * Forgets every stage. Wrappers created before keep recording, into stages that are no
+    * longer reported.
+    * */
+    public static void reset() {
+        STAGES.clear();
+    }
+
+    private static void emitStatistics() {
+        for(Stage stage : STAGES.values()) {
+            StageSnapshot s = stage.snapshot();
+            StageStatistics event = new StageStatistics();
+            event.stage = s.getName();
+            event.kind = s.getKind().name();
+            event.invocations = s.getInvocations();
+            event.passed = s.getPassed();
+            event.errors = s.getErrors();
+            event.mean = (long) s.getMeanNanos();
+            event.p50 = s.getPercentileNanos(50);
+            event.p99 = s.getPercentileNanos(99);
+            event.max = s.getMaxNanos();
+            event.commit();
+        }
+    }
+
+    public enum Kind {
+        PREDICATE, FUNCTION, CONSUMER, SUPPLIER
+    }
+
+    private enum Outcome {
+        PASSED, FAILED, RETURNED, ERROR
+    }
+
+    private static final class Stage {
+        final String name;
+        final Kind kind;
+        final LongAdder invocations = new LongAdder();
+        final LongAdder passed = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Stage(String name, Kind kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+
+        void record(long start, Outcome outcome) {
+            long nanos = System.nanoTime() - start;
+            invocations.increment();
+            if(outcome == Outcome.PASSED) {
+                passed.increment();
+            } else if(outcome == Outcome.ERROR) {
+                errors.increment();
+            }
+            totalNanos.add(nanos);
+            histogram.record(nanos);
+            // only written while the maximum still grows, so hardly ever after warm-up
+            long max = maxNanos.get();
+            while(nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+
+            StageInvocation event = new StageInvocation();
+            if(event.isEnabled()) {
+                event.stage = name;
+                event.outcome = outcome.name();
+                event.latency = nanos;
+                event.commit();
+            }
+        }
+
+        StageSnapshot snapshot() {
+            return new StageSnapshot(name, kind, invocations.sum(), passed.sum(), errors.sum(),
+                    totalNanos.sum(), maxNanos.get(), histogram.counts());
+        }
+    }
+
+    /*
+    * Log-linear buckets: the values 0..31 have a bucket each; above that, every range
+    * [2^k, 2^(k+1)) is split into 16 buckets of equal width.
+    * */
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // 32
+        private static final int HALF = SUB_BUCKETS / 2;
+        static final int BUCKETS = SUB_BUCKETS + (64 - SUB_BUCKET_BITS - 1) * HALF; // 960
+        private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2;
+
+        private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+
+        void record(long nanos) {
+            int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            counts.getAndIncrement(stripe * BUCKETS + bucket(Math.max(0, nanos)));
+        }
+
+        static int bucket(long value) {
+            if(value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+            int top = (int) (value >>> shift); // HALF..SUB_BUCKETS-1
+            return SUB_BUCKETS + (shift - 1) * HALF + (top - HALF);
+        }
+
+        /*
+        * The smallest value that falls into the bucket.
+        * */
+        static long lowestValue(int bucket) {
+            if(bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int k = bucket - SUB_BUCKETS;
+            int shift = k / HALF + 1;
+            return (long) (k % HALF + HALF) << shift;
+        }
+
+        static long highestValue(int bucket) {
+            return bucket + 1 == BUCKETS ? Long.MAX_VALUE : lowestValue(bucket + 1) - 1;
+        }
+
+        long[] counts() {
+            long[] total = new long[BUCKETS];
+            for(int i = 0; i < counts.length(); i++) {
+                total[i % BUCKETS] += counts.get(i);
+            }
+            return total;
+        }
+    }
+
+    public static final class StageSnapshot {
+        private final String name;
+        private final Kind kind;
+        private final long invocations;
+        private final long passed;
+        private final long errors;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] histogram;
+
+        StageSnapshot(String name, Kind kind, long invocations, long passed, long errors, long totalNanos, long maxNanos, long[] histogram) {
+            this.name = name;
+            this.kind = kind;
+            this.invocations = invocations;
+            this.passed = passed;
+            this.errors = errors;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.histogram = histogram;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public long getInvocations() {
+            return invocations;
+        }
+
+        /*
+        * Predicates only: calls that returned true. Calls that returned false are
+        * getInvocations() - getPassed() - getErrors().
+        * */
+        public long getPassed() {
+            return passed;
+        }
+
+        public long getFailed() {
+            return kind == Kind.PREDICATE ? invocations - passed - errors : 0;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /*
+        * Of the calls that returned, the fraction that returned true.
+        * */
+        public double getPassRatio() {
+            long returned = passed + getFailed();
+            return returned == 0 ? 0 : (double) passed / returned;
+        }
+
+        public double getMeanNanos() {
+            return invocations == 0 ? 0 : (double) totalNanos / invocations;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /*
+        * The latency below which the given percentage of the calls fall, as the upper end of
+        * its bucket (at most about 6% too high), capped at the maximum.
+        * */
+        public long getPercentileNanos(double percentile) {
+            long total = 0;
+            for(long count : histogram) {
+                total += count;
+            }
+            if(total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for(int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if(seen >= rank) {
+                    return Math.min(LatencyHistogram.highestValue(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "StageSnapshot{" +
+                    "name='" + name + '\'' +
+                    ", kind=" + kind +
+                    ", invocations=" + invocations +
+                    (kind == Kind.PREDICATE ? ", passRatio=" + String.format("%.3f", getPassRatio()) : "") +
+                    ", errors=" + errors +
+                    ", meanNanos=" + String.format("%.0f", getMeanNanos()) +
+                    ", p50Nanos=" + getPercentileNanos(50) +
+                    ", p99Nanos=" + getPercentileNanos(99) +
+                    ", maxNanos=" + maxNanos +
+                    '}';
+        }
+    }
+
+    @Name("lambdas.StageStatistics")
+    @Label("Lambda Stage Statistics")
+    @Category("Lambdas")
+    @Description("Totals of an instrumented lambda since it was created")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class StageStatistics extends Event {
+        @Label("Stage")
+        String stage;
+        @Label("Kind")
+        String kind;
+        @Label("Invocations")
+        long invocations;
+        @Label("Passed")
+        long passed;
+        @Label("Errors")
+        long errors;
+        @Label("Mean")
+        @Timespan(Timespan.NANOSECONDS)
+        long mean;
+        @Label("50th Percentile")
+        @Timespan(Timespan.NANOSECONDS)
+        long p50;
+        @Label("99th Percentile")
+        @Timespan(Timespan.NANOSECONDS)
+        long p99;
+        @Label("Maximum")
+        @Timespan(Timespan.NANOSECONDS)
+        long max;
+    }
+
+    @Name("lambdas.StageInvocation")
+    @Label("Lambda Stage Invocation")
+    @Category("Lambdas")
+    @Description("One call of an instrumented lambda")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class StageInvocation extends Event {
+        @Label("Stage")
+        String stage;
+        @Label("Outcome")
+        String outcome;
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+}
@@ -0,0 +1,10 @@
+package lambdas;
+
+/*
+* Evaluate<T> for int's: the value is passed as a primitive int, so a lambda like
+* i -> i < 0 doesn't box it into an Integer (similar to IntPredicate).
+* */
+@FunctionalInterface
+public interface IntEvaluate {
+    boolean isNegative(int value);
+}
@@ -0,0 +1,10 @@
+package lambdas;
+
+/*
+* Evaluate<T> for long's: the value is passed as a primitive long, so a lambda like
+* i -> i < 0 doesn't box it into a Long (similar to LongPredicate).
+* */
+@FunctionalInterface
+public interface LongEvaluate {
+    boolean isNegative(long value);
+}
@@ -0,0 +1,222 @@
+package lambdas;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+
+public class MapIngestor<K, V> implements BiConsumer<K, V>, AutoCloseable {
+
+    /*
+    * A BiConsumer<K, V> that puts key/value pairs into a map, from any number of threads.
+    *
+    * BiConsumer<String, String> biCon = (key, value) -> map.put(key, value) on a HashMap is
+    * only correct on one thread: with several threads the HashMap can lose entries or get
+    * corrupted. Wrapping it in a lock (Collections.synchronizedMap) makes every thread wait
+    * for every other one.
+    *
+    * Two modes:
+    *   - buffered(): every thread puts into its OWN HashMap (a thread local buffer), so
+    *     threads never touch each other's data. flush() merges all the buffers into the
+    *     shared map. A buffer also merges itself when it reaches bufferLimit entries. The
+    *     pairs only show up in map() after a flush - the price of not sharing anything.
+    *   - direct(): every pair goes straight into a ConcurrentHashMap with merge(). That map
+    *     locks per bucket ("striped"), not the whole map, so threads only wait for each
+    *     other when they hit the same bucket, and a pair is visible as soon as accept()
+    *     returns.
+    *
+    * When a key comes again, the merge policy (a BinaryOperator, like in Collectors.toMap())
+    * decides the value: lastWins(), firstWins(), or e.g. Integer::sum to count. In buffered
+    * mode values are merged in the buffer first and then in the shared map, so the policy
+    * should not care about grouping (associative) and "last" means "flushed last". Like
+    * Map.merge() and Collectors.toMap(), a policy that returns null removes the key.
+    *
+    *   MapIngestor<String, String> capitals = MapIngestor.buffered(MapIngestor.lastWins());
+    *   pairs.parallelStream().forEach(p -> capitals.accept(p.city, p.country));
+    *   capitals.flush();
+    *   Map<String, String> map = capitals.map();
+    *
+    * stats() tells how many pairs were accepted, how many were merged into an existing key
+    * and the throughput since the ingestor was created.
+    * */
+
+    static final int DEFAULT_BUFFER_LIMIT = 1 << 12;
+
+    private final ConcurrentHashMap<K, V> map = new ConcurrentHashMap<>();
+    private final BinaryOperator<V> countingMerge;
+    private final boolean buffered;
+    private final int bufferLimit;
+    private final ThreadLocal<Buffer<K, V>> buffer;
+    private final Queue<Buffer<K, V>> buffers = new ConcurrentLinkedQueue<>();
+
+    private final long created = System.nanoTime();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    private MapIngestor(BinaryOperator<V> mergePolicy, boolean buffered, int bufferLimit) {
+        if(bufferLimit < 1) {
+            throw new IllegalArgumentException("bufferLimit " + bufferLimit);
+        }
+        Objects.requireNonNull(mergePolicy);
+        this.countingMerge = (oldValue, newValue) -> {
+            merged.increment();
+            return mergePolicy.apply(oldValue, newValue);
+        };
+        this.buffered = buffered;
+        this.bufferLimit = bufferLimit;
+        this.buffer = ThreadLocal.withInitial(() -> {
+            Buffer<K, V> b = new Buffer<>();
+            buffers.add(b);
+            return b;
+        });
+    }
+
+    public static <K, V> MapIngestor<K, V> buffered(BinaryOperator<V> mergePolicy) {
+        return new MapIngestor<>(mergePolicy, true, DEFAULT_BUFFER_LIMIT);
+    }
+
+    public static <K, V> MapIngestor<K, V> buffered(BinaryOperator<V> mergePolicy, int bufferLimit) {
+        return new MapIngestor<>(mergePolicy, true, bufferLimit);
+    }
+
+    public static <K, V> MapIngestor<K, V> direct(BinaryOperator<V> mergePolicy) {
+        return new MapIngestor<>(mergePolicy, false, 1);
+    }
+
+    public static <V> BinaryOperator<V> lastWins() {
+        return (oldValue, newValue) -> newValue;
+    }
+
+    public static <V> BinaryOperator<V> firstWins() {
+        return (oldValue, newValue) -> oldValue;
+    }
+
+    @Override
+    public void accept(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        accepted.increment();
+        if(!buffered) {
+            mergeInto(key, value);
+            return;
+        }
+
+        Buffer<K, V> b = buffer.get();
+        // only contended while a flush() is merging this buffer
+        synchronized(b) {
+            b.pairs.merge(key, value, countingMerge);
+            if(b.pairs.size() >= bufferLimit) {
+                drain(b);
+            }
+        }
+    }
+
+    /*
+    * Merges every thread's buffer into map(). Pairs accepted before flush() was called are
+    * visible afterwards. The buffers of threads that have ended are dropped here, so short
+    * lived producer threads don't pile up buffers.
+    * */
+    public void flush() {
+        if(!buffered) {
+            return;
+        }
+        for(Iterator<Buffer<K, V>> it = buffers.iterator(); it.hasNext(); ) {
+            Buffer<K, V> b = it.next();
+            boolean ownerGone = !b.owner.isAlive(); // checked first: a dead thread adds nothing more
+            synchronized(b) {
+                drain(b);
+            }
+            if(ownerGone) {
+                it.remove();
+            }
+        }
+        flushes.increment();
+    }
+
+    private void drain(Buffer<K, V> b) {
+        for(Map.Entry<K, V> pair : b.pairs.entrySet()) {
+            mergeInto(pair.getKey(), pair.getValue());
+        }
+        b.pairs.clear();
+    }
+
+    private void mergeInto(K key, V value) {
+        map.merge(key, value, countingMerge);
+    }
+
+    /*
+    * A read-only live view of the merged pairs.
+    * */
+    public Map<K, V> map() {
+        return Collections.unmodifiableMap(map);
+    }
+
+    public Stats stats() {
+        return new Stats(accepted.sum(), merged.sum(), flushes.sum(), System.nanoTime() - created);
+    }
+
+    /*
+    * Flushes; the ingestor can still be used afterwards.
+    * */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private static final class Buffer<K, V> {
+        final Thread owner = Thread.currentThread();
+        final HashMap<K, V> pairs = new HashMap<>();
+    }
+
+    public static class Stats {
+        private final long accepted;
+        private final long merged;
+        private final long flushes;
+        private final long elapsedNanos;
+
+        Stats(long accepted, long merged, long flushes, long elapsedNanos) {
+            this.accepted = accepted;
+            this.merged = merged;
+            this.flushes = flushes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        /*
+        * Pairs whose key was already there (in a buffer or in the map), so the merge policy
+        * was applied.
+        * */
+        public long getMerged() {
+            return merged;
+        }
+
+        public long getFlushes() {
+            return flushes;
+        }
+
+        public double getAcceptedPerSecond() {
+            return elapsedNanos == 0 ? 0 : accepted * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "accepted=" + accepted +
+                    ", merged=" + merged +
+                    ", flushes=" + flushes +
+                    ", acceptedPerSecond=" + String.format("%.0f", getAcceptedPerSecond()) +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,601 @@
+package lambdas;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+public class Memoizer<T, R> implements Function<T, R> {
+
+    /*
+    * A Function that remembers its results: memoization.
+    *
+    *   Function<String, Integer> slow = s -> expensiveLookup(s);
+    *   Memoizer<String, Integer> fast = Memoizer.memoize(slow, 10_000);
+    *   fast.apply("Moscow"); // computed
+    *   fast.apply("Moscow"); // remembered
+    *
+    * Only makes sense for pure functions: same input, same output, no side effects (like the
+    * ones in TestPredicate.function()).
+    *
+    * ===== Thread safety =====
+    * The results are kept in a ConcurrentHashMap. When several threads ask for the same
+    * missing key at the same time, only the first one computes it; the others wait for its
+    * result instead of computing it again. The computation runs outside of any lock, so
+    * slow keys don't hold up other keys.
+    *
+    * ===== Bounded size, W-TinyLFU eviction =====
+    * When the cache is full something has to go. LRU (evict the least recently used) is easily
+    * fooled: a burst of one-off keys pushes out the keys that are used all the time. Here the
+    * cache also keeps an approximate count of how often every key was asked for (a
+    * "count-min sketch": 4 small counters per key in a fixed size table, the smallest of the
+    * 4 is the estimate; all the counters are halved now and then so old popularity fades):
+    *   - new entries go into a small LRU "window" (1% of the size).
+    *   - entries leaving the window are candidates for the "main" area, which is a
+    *     segmented LRU: probation (entries seen once) and protected (entries used again).
+    *   - when the cache is too big, the candidate and the oldest entry in probation are
+    *     compared by frequency and the less popular one is evicted (TinyLFU admission).
+    * With a skewed key set (a few keys asked for most of the time) the popular keys stay.
+    *
+    * Keeping the LRU lists in order needs a lock, but hits shouldn't all fight over it. A hit
+    * just records the entry in a small per-thread-stripe buffer; the buffers are replayed
+    * onto the lists, under the lock, when one fills up or a new entry is added. If a buffer is
+    * full the access is simply dropped - the order is approximate anyway.
+    *
+    * ===== Expire after write =====
+    * Optionally an entry is only valid for some time after it was computed. An expired entry
+    * is dropped and computed again the next time it is asked for.
+    *
+    * stats() tells hits, misses, evictions and the time spent computing.
+    * */
+
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    private static final int READ_BUFFER_SIZE = 16; // power of 2
+    private static final int READ_BUFFERS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2;
+
+    private final Function<? super T, ? extends R> function;
+    private final int maximumSize;
+    private final long expireAfterWriteNanos; // 0 = never
+
+    private final ConcurrentHashMap<Object, Node> map = new ConcurrentHashMap<>();
+
+    // the eviction policy, guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final Queue window = new Queue();
+    private final Queue probation = new Queue();
+    private final Queue protectedQueue = new Queue();
+    private final int windowMaximum;
+    private final int protectedMaximum;
+
+    private final AtomicLong[] readCounts = new AtomicLong[READ_BUFFERS];
+    private final AtomicReferenceArray<Node> readBuffer = new AtomicReferenceArray<>(READ_BUFFERS * READ_BUFFER_SIZE);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+
+    private Memoizer(Function<? super T, ? extends R> function, int maximumSize, Duration expireAfterWrite) {
+        if(maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize " + maximumSize);
+        }
+        this.function = Objects.requireNonNull(function);
+        this.maximumSize = maximumSize;
+        this.expireAfterWriteNanos = expireAfterWrite == null ? 0 : Math.max(1, expireAfterWrite.toNanos());
+        this.sketch = new FrequencySketch(maximumSize);
+        this.windowMaximum = Math.max(1, maximumSize * WINDOW_PERCENT / 100);
+        this.protectedMaximum = (int) ((long) (maximumSize - windowMaximum) * PROTECTED_PERCENT / 100);
+        for(int i = 0; i < READ_BUFFERS; i++) {
+            readCounts[i] = new AtomicLong();
+        }
+    }
+
+    public static <T, R> Memoizer<T, R> memoize(Function<? super T, ? extends R> function, int maximumSize) {
+        return new Memoizer<>(function, maximumSize, null);
+    }
+
+    public static <T, R> Memoizer<T, R> memoize(Function<? super T, ? extends R> function, int maximumSize,
+                                                Duration expireAfterWrite) {
+        return new Memoizer<>(function, maximumSize, expireAfterWrite);
+    }
+
+    public static <T, U, R> Bi<T, U, R> memoize(BiFunction<? super T, ? super U, ? extends R> function, int maximumSize) {
+        return new Bi<>(function, maximumSize, null);
+    }
+
+    public static <T, U, R> Bi<T, U, R> memoize(BiFunction<? super T, ? super U, ? extends R> function, int maximumSize,
+                                                Duration expireAfterWrite) {
+        return new Bi<>(function, maximumSize, expireAfterWrite);
+    }
+
+    /*
+    * The remembered result, or the computed one. A null result is returned but not
+    * remembered. If the function throws, nothing is remembered and every thread that was
+    * waiting for that key gets the exception.
+    * */
+    @Override
+    public R apply(T key) {
+        Objects.requireNonNull(key);
+        while(true) {
+            Node node = map.get(key);
+            if(node != null) {
+                if(node.isExpired(expireAfterWriteNanos)) {
+                    if(map.remove(key, node)) {
+                        expirations.increment();
+                        removeFromPolicy(node);
+                    }
+                    continue;
+                }
+                Object value = node.value;
+                if(value == null) {
+                    value = node.await();
+                }
+                hits.increment();
+                recordRead(node);
+                @SuppressWarnings("unchecked")
+                R result = (R) value;
+                return result;
+            }
+
+            Node created = new Node(key);
+            if(map.putIfAbsent(key, created) != null) {
+                continue; // someone else got there first
+            }
+            misses.increment();
+            return load(key, created);
+        }
+    }
+
+    private R load(T key, Node node) {
+        long start = System.nanoTime();
+        R value;
+        try {
+            value = function.apply(key);
+        } catch(RuntimeException | Error e) {
+            loadNanos.add(System.nanoTime() - start);
+            loadFailures.increment();
+            map.remove(key, node);
+            node.pending.completeExceptionally(e);
+            throw e;
+        }
+        long now = System.nanoTime();
+        loadNanos.add(now - start);
+
+        node.writeTime = now;
+        node.value = value;
+        node.pending.complete(value);
+        if(value == null) {
+            map.remove(key, node);
+            return null;
+        }
+
+        lock.lock();
+        try {
+            drainReadBuffers();
+            if(map.get(key) == node) { // not invalidated in the meantime
+                onWrite(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return value;
+    }
+
+    public void invalidate(T key) {
+        Node node = map.remove(key);
+        if(node != null) {
+            removeFromPolicy(node);
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            for(Node node : map.values()) {
+                if(map.remove(node.key, node)) {
+                    unlink(node);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    /*
+    * Replays the buffered reads now (normally done when a buffer fills up or on a miss).
+    * */
+    public void cleanUp() {
+        lock.lock();
+        try {
+            drainReadBuffers();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), loadFailures.sum(), loadNanos.sum());
+    }
+
+    // ===== reads =====
+
+    private void recordRead(Node node) {
+        int stripe = (int) Thread.currentThread().getId() & (READ_BUFFERS - 1);
+        long count = readCounts[stripe].getAndIncrement();
+        readBuffer.lazySet(stripe * READ_BUFFER_SIZE + (int) (count & (READ_BUFFER_SIZE - 1)), node);
+        if((count & (READ_BUFFER_SIZE - 1)) == READ_BUFFER_SIZE - 1 && lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffers() {
+        for(int i = 0; i < readBuffer.length(); i++) {
+            if(readBuffer.get(i) != null) {
+                Node node = readBuffer.getAndSet(i, null);
+                if(node != null) {
+                    onAccess(node);
+                }
+            }
+        }
+    }
+
+    // ===== the policy, always under lock =====
+
+    private void onWrite(Node node) {
+        sketch.increment(node.key.hashCode());
+        window.addLast(node);
+        while(window.size > windowMaximum) {
+            probation.addLast(window.removeFirst());
+        }
+        evict();
+    }
+
+    private void onAccess(Node node) {
+        if(node.queue == null) {
+            return; // removed, or not added yet
+        }
+        sketch.increment(node.key.hashCode());
+        if(node.queue == window || node.queue == protectedQueue) {
+            node.queue.moveToLast(node);
+        } else {
+            probation.unlink(node);
+            protectedQueue.addLast(node);
+            while(protectedQueue.size > protectedMaximum) {
+                probation.addLast(protectedQueue.removeFirst());
+            }
+        }
+    }
+
+    private void evict() {
+        while(window.size + probation.size + protectedQueue.size > maximumSize) {
+            if(probation.size == 0) {
+                probation.addLast(protectedQueue.size > 0 ? protectedQueue.removeFirst() : window.removeFirst());
+            }
+            Node victim = probation.first;
+            Node candidate = probation.last;
+            Node evicted = victim;
+            if(candidate != victim && sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+                evicted = candidate;
+            }
+            probation.unlink(evicted);
+            if(map.remove(evicted.key, evicted)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private void removeFromPolicy(Node node) {
+        lock.lock();
+        try {
+            unlink(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unlink(Node node) {
+        if(node.queue != null) {
+            node.queue.unlink(node);
+        }
+    }
+
+    // ===== entries =====
+
+    private static final class Node {
+        final Object key;
+        final CompletableFuture<Object> pending = new CompletableFuture<>();
+        final Thread loader = Thread.currentThread();
+        volatile Object value;  // null while loading
+        volatile long writeTime;
+
+        // guarded by the lock
+        Queue queue;
+        Node previous;
+        Node next;
+
+        Node(Object key) {
+            this.key = key;
+        }
+
+        boolean isExpired(long expireAfterWriteNanos) {
+            return expireAfterWriteNanos > 0 && value != null && System.nanoTime() - writeTime >= expireAfterWriteNanos;
+        }
+
+        Object await() {
+            if(loader == Thread.currentThread() && !pending.isDone()) {
+                throw new IllegalStateException("recursive call for key " + key);
+            }
+            try {
+                return pending.join();
+            } catch(CompletionException e) {
+                if(e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if(e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /*
+    * A doubly linked LRU list: first = least recently used.
+    * */
+    private static final class Queue {
+        Node first;
+        Node last;
+        int size;
+
+        void addLast(Node node) {
+            node.queue = this;
+            node.previous = last;
+            node.next = null;
+            if(last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+            size++;
+        }
+
+        void unlink(Node node) {
+            if(node.previous == null) {
+                first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if(node.next == null) {
+                last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.queue = null;
+            node.previous = null;
+            node.next = null;
+            size--;
+        }
+
+        Node removeFirst() {
+            Node node = first;
+            unlink(node);
+            return node;
+        }
+
+        void moveToLast(Node node) {
+            if(node != last) {
+                unlink(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /*
+    * Count-min sketch with 4 bit counters (0..15), 16 to a long. Every key has 4 counters,
+    * one per hash function, and its frequency is the smallest of them: collisions can only
+    * make a count too high, and the smallest is the least polluted. After 10 * maximumSize
+    * increments every counter is halved, so keys that were popular long ago fade out.
+    * */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0x97cb3127L, 0xab0c6ae3L, 0xc2b2ae35L, 0x27d4eb2fL};
+        private static final long HALF_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int length = Integer.highestOneBit(Math.max(16, Math.min(maximumSize, 1 << 26)) - 1) << 1;
+            table = new long[length];
+            sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+        }
+
+        int frequency(int hashCode) {
+            int frequency = 15;
+            for(int i = 0; i < 4; i++) {
+                long h = hash(hashCode, i);
+                int shift = (int) (h >>> 60) << 2;
+                frequency = Math.min(frequency, (int) ((table[index(h)] >>> shift) & 15));
+            }
+            return frequency;
+        }
+
+        void increment(int hashCode) {
+            boolean added = false;
+            for(int i = 0; i < 4; i++) {
+                long h = hash(hashCode, i);
+                int index = index(h);
+                int shift = (int) (h >>> 60) << 2;
+                if(((table[index] >>> shift) & 15) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if(added && ++additions >= sampleSize) {
+                for(int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & HALF_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        private static long hash(int hashCode, int i) {
+            long h = (hashCode + SEEDS[i]) * SEEDS[i];
+            return h ^ (h >>> 29) ^ (h << 7);
+        }
+
+        private int index(long h) {
+            return (int) h & (table.length - 1);
+        }
+    }
+
+    /*
+    * Memoizer for a BiFunction: the two arguments together are the key.
+    * */
+    public static class Bi<T, U, R> implements BiFunction<T, U, R> {
+        private final Memoizer<Pair<T, U>, R> memoizer;
+
+        Bi(BiFunction<? super T, ? super U, ? extends R> function, int maximumSize, Duration expireAfterWrite) {
+            memoizer = new Memoizer<>(pair -> function.apply(pair.first, pair.second), maximumSize, expireAfterWrite);
+        }
+
+        @Override
+        public R apply(T t, U u) {
+            return memoizer.apply(new Pair<>(t, u));
+        }
+
+        public void invalidate(T t, U u) {
+            memoizer.invalidate(new Pair<>(t, u));
+        }
+
+        public void invalidateAll() {
+            memoizer.invalidateAll();
+        }
+
+        public int size() {
+            return memoizer.size();
+        }
+
+        public Stats stats() {
+            return memoizer.stats();
+        }
+    }
+
+    private static final class Pair<T, U> {
+        private final T first;
+        private final U second;
+
+        Pair(T first, U second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof Pair)) {
+                return false;
+            }
+            Pair<?, ?> pair = (Pair<?, ?>) o;
+            return Objects.equals(first, pair.first) && Objects.equals(second, pair.second);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(first) + Objects.hashCode(second);
+        }
+    }
+
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long loadFailures;
+        private final long loadNanos;
+
+        Stats(long hits, long misses, long evictions, long expirations, long loadFailures, long loadNanos) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.loadFailures = loadFailures;
+            this.loadNanos = loadNanos;
+        }
+
+        /*
+        * Calls answered without running the function (including the ones that waited for
+        * another thread computing the same key).
+        * */
+        public long getHits() {
+            return hits;
+        }
+
+        /*
+        * Calls that ran the function.
+        * */
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public long getLoadFailures() {
+            return loadFailures;
+        }
+
+        public long getTotalLoadTimeNanos() {
+            return loadNanos;
+        }
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 1.0 : (double) hits / requests;
+        }
+
+        public double getAverageLoadTimeNanos() {
+            return misses == 0 ? 0 : (double) loadNanos / misses;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "hits=" + hits +
+                    ", misses=" + misses +
+                    ", hitRate=" + String.format("%.3f", getHitRate()) +
+                    ", evictions=" + evictions +
+                    ", expirations=" + expirations +
+                    ", loadFailures=" + loadFailures +
+                    ", averageLoadTime=" + String.format("%.0f", getAverageLoadTimeNanos()) + "ns" +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package lambdas;
+
+public class NumericScreen {
+
+    /*
+    * Evaluating a condition over a whole int[]/long[]/double[] at once, into a bitmask.
+    *
+    * The result is a long[] with one bit per element: bit i (word i / 64, bit i % 64) is set
+    * when the condition holds for values[i]. BitSet.valueOf(mask) turns it into a BitSet,
+    * count(mask) counts the matches.
+    *
+    *   long[] negatives = NumericScreen.negatives(amounts);
+    *   long[] evens = NumericScreen.evaluate(ids, n -> n % 2 == 0);
+    *
+    * Nothing is boxed: evaluate() takes an IntEvaluate/LongEvaluate/DoubleEvaluate whose
+    * method receives the primitive value. But a single evaluate() loop called with many
+    * different lambdas can't have them all inlined by the JIT, so it pays a call per element.
+    * The common screens (sign, parity, multiple of, less/greater than) have their own loops
+    * instead, with no call and no branch per element: the bit is computed arithmetically
+    * (e.g. the sign bit of an int is value >>> 31) and 64 of them are packed into a word.
+    * Loops like that are cheap and predictable whatever the data looks like.
+    *
+    * (On Java 17 the Vector API is still the incubator module jdk.incubator.vector, which
+    * needs --add-modules at every compile and every run, so it is not used here.)
+    * */
+
+    private NumericScreen() {
+    }
+
+    public static long[] evaluate(int[] values, IntEvaluate lambda) {
+        long[] mask = new long[words(values.length)];
+        for(int i = 0; i < values.length; i++) {
+            if(lambda.isNegative(values[i])) {
+                mask[i >>> 6] |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    public static long[] evaluate(long[] values, LongEvaluate lambda) {
+        long[] mask = new long[words(values.length)];
+        for(int i = 0; i < values.length; i++) {
+            if(lambda.isNegative(values[i])) {
+                mask[i >>> 6] |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    public static long[] evaluate(double[] values, DoubleEvaluate lambda) {
+        long[] mask = new long[words(values.length)];
+        for(int i = 0; i < values.length; i++) {
+            if(lambda.isNegative(values[i])) {
+                mask[i >>> 6] |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    // ===== int =====
+
+    public static long[] negatives(int[] values) {
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                bits |= (long) (values[i] >>> 31) << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    public static long[] evens(int[] values) {
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                bits |= (long) (~values[i] & 1) << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    /*
+    * values[i] % divisor == 0. Powers of 2 are a mask test, like evens().
+    * */
+    public static long[] multiplesOf(int[] values, int divisor) {
+        if(divisor == 0) {
+            throw new ArithmeticException("/ by zero");
+        }
+        int abs = Math.abs(divisor); // MIN_VALUE stays negative, but it is a power of 2 too
+        if(Integer.bitCount(abs) != 1) {
+            return evaluate(values, v -> v % divisor == 0);
+        }
+        int low = abs - 1;
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                // (values[i] & low) is 0..low; minus 1 is negative only for 0
+                bits |= (long) (((values[i] & low) - 1) >>> 31) << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    public static long[] lessThan(int[] values, int limit) {
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                // in long, so the subtraction can't overflow
+                bits |= ((long) values[i] - limit) >>> 63 << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    public static long[] greaterThan(int[] values, int limit) {
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                bits |= ((long) limit - values[i]) >>> 63 << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    // ===== long =====
+
+    public static long[] negatives(long[] values) {
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                bits |= values[i] >>> 63 << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    public static long[] evens(long[] values) {
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                bits |= (~values[i] & 1) << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    public static long[] multiplesOf(long[] values, long divisor) {
+        if(divisor == 0) {
+            throw new ArithmeticException("/ by zero");
+        }
+        long abs = Math.abs(divisor);
+        if(Long.bitCount(abs) != 1) {
+            return evaluate(values, v -> v % divisor == 0);
+        }
+        long low = abs - 1;
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                bits |= ((values[i] & low) - 1) >>> 63 << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    /*
+    * The comparisons of long's can overflow in a subtraction, so they use the ternary, which
+    * the JIT turns into a conditional set, not a branch.
+    * */
+    public static long[] lessThan(long[] values, long limit) {
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                bits |= (values[i] < limit ? 1L : 0L) << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    public static long[] greaterThan(long[] values, long limit) {
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                bits |= (values[i] > limit ? 1L : 0L) << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    // ===== double =====
+
+    /*
+    * value < 0, so -0.0 and NaN are not negative (the sign bit alone would say they are).
+    * */
+    public static long[] negatives(double[] values) {
+        return lessThan(values, 0.0);
+    }
+
+    public static long[] lessThan(double[] values, double limit) {
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                bits |= (values[i] < limit ? 1L : 0L) << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    public static long[] greaterThan(double[] values, double limit) {
+        long[] mask = new long[words(values.length)];
+        for(int w = 0; w < mask.length; w++) {
+            int from = w << 6;
+            int to = Math.min(values.length, from + 64);
+            long bits = 0;
+            for(int i = from; i < to; i++) {
+                bits |= (values[i] > limit ? 1L : 0L) << i;
+            }
+            mask[w] = bits;
+        }
+        return mask;
+    }
+
+    // ===== masks =====
+
+    public static int count(long[] mask) {
+        int count = 0;
+        for(long word : mask) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public static boolean isSet(long[] mask, int index) {
+        return (mask[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static int words(int length) {
+        return (length + 63) >>> 6;
+    }
+}
@@ -0,0 +1,280 @@
+package lambdas;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+public abstract class StringRule {
+
+    /*
+    * A small language ("DSL") for String conditions, which is compiled into one fused matcher.
+    *
+    * Stacking Predicate lambdas like s -> s.contains("City") with and()/or() works, but
+    * every contains()/startsWith()/endsWith() scans the String again, so 30 rules means up
+    * to 30 scans of every input. A StringRule only DESCRIBES the condition:
+    *
+    *   StringRule rule = StringRule.startsWith("Mr.")
+    *           .and(StringRule.contains("City").or(StringRule.contains("Town")))
+    *           .and(StringRule.lengthAtMost(40).not());
+    *
+    * and compile() turns it into a Predicate<String> (see CompiledRules) that:
+    *   1.- checks the length conditions first; if they already decide the result, the
+    *       String is not scanned at all.
+    *   2.- otherwise finds every term of every rule in ONE left to right scan, with an
+    *       Aho-Corasick automaton, and evaluates the and/or/not tree on what was found.
+    *
+    * compileAll() does the same for several rules at once, still with one scan per String.
+    * */
+
+    StringRule() {
+    }
+
+    public static StringRule contains(String term) {
+        return new Term(Term.CONTAINS, term);
+    }
+
+    public static StringRule startsWith(String term) {
+        return new Term(Term.STARTS_WITH, term);
+    }
+
+    public static StringRule endsWith(String term) {
+        return new Term(Term.ENDS_WITH, term);
+    }
+
+    public static StringRule lengthBetween(int min, int max) {
+        return new Length(min, max);
+    }
+
+    public static StringRule lengthAtLeast(int min) {
+        return new Length(min, Integer.MAX_VALUE);
+    }
+
+    public static StringRule lengthAtMost(int max) {
+        return new Length(0, max);
+    }
+
+    public static StringRule lengthEquals(int length) {
+        return new Length(length, length);
+    }
+
+    public StringRule and(StringRule other) {
+        return new And(this, other);
+    }
+
+    public StringRule or(StringRule other) {
+        return new Or(this, other);
+    }
+
+    public StringRule not() {
+        return new Not(this);
+    }
+
+    public Predicate<String> compile() {
+        return new CompiledRules(List.of(this));
+    }
+
+    public static CompiledRules compileAll(List<StringRule> rules) {
+        return new CompiledRules(rules);
+    }
+
+    /*
+    * Three valued logic for the length pre-check: true, false or "can't tell without
+    * scanning" (UNKNOWN).
+    * */
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+    static final int UNKNOWN = 2;
+
+    abstract int evaluateLength(int length);
+
+    /*
+    * found[term.id] tells whether the term was found where it had to be (contains, at the
+    * start or at the end), filled by the scan.
+    * */
+    abstract boolean evaluate(int length, boolean[] found);
+
+    /*
+    * A copy of this rule whose terms have their ids in the compiled matcher. Equal terms
+    * (same kind and text) share an id, so they are only searched for once.
+    * */
+    abstract StringRule bind(Map<String, Term> terms);
+
+    static class Term extends StringRule {
+        static final int CONTAINS = 0;
+        static final int STARTS_WITH = 1;
+        static final int ENDS_WITH = 2;
+
+        final int kind;
+        final String text;
+        final int id; // -1 until bound
+
+        Term(int kind, String text) {
+            this(kind, text, -1);
+            if(text.isEmpty()) {
+                throw new IllegalArgumentException("empty term");
+            }
+        }
+
+        private Term(int kind, String text, int id) {
+            this.kind = kind;
+            this.text = text;
+            this.id = id;
+        }
+
+        @Override
+        int evaluateLength(int length) {
+            return length < text.length() ? FALSE : UNKNOWN;
+        }
+
+        @Override
+        boolean evaluate(int length, boolean[] found) {
+            return found[id];
+        }
+
+        @Override
+        StringRule bind(Map<String, Term> terms) {
+            return terms.computeIfAbsent(kind + ":" + text, key -> new Term(kind, text, terms.size()));
+        }
+
+        @Override
+        public String toString() {
+            String[] names = {"contains", "startsWith", "endsWith"};
+            return names[kind] + "(\"" + text + "\")";
+        }
+    }
+
+    private static class Length extends StringRule {
+        private final int min;
+        private final int max;
+
+        Length(int min, int max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        int evaluateLength(int length) {
+            return length >= min && length <= max ? TRUE : FALSE;
+        }
+
+        @Override
+        boolean evaluate(int length, boolean[] found) {
+            return length >= min && length <= max;
+        }
+
+        @Override
+        StringRule bind(Map<String, Term> terms) {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "length(" + min + ".." + max + ")";
+        }
+    }
+
+    private static class And extends StringRule {
+        private final StringRule left;
+        private final StringRule right;
+
+        And(StringRule left, StringRule right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int evaluateLength(int length) {
+            int l = left.evaluateLength(length);
+            if(l == FALSE) {
+                return FALSE;
+            }
+            int r = right.evaluateLength(length);
+            if(r == FALSE) {
+                return FALSE;
+            }
+            return l == TRUE && r == TRUE ? TRUE : UNKNOWN;
+        }
+
+        @Override
+        boolean evaluate(int length, boolean[] found) {
+            return left.evaluate(length, found) && right.evaluate(length, found);
+        }
+
+        @Override
+        StringRule bind(Map<String, Term> terms) {
+            return new And(left.bind(terms), right.bind(terms));
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " and " + right + ")";
+        }
+    }
+
+    private static class Or extends StringRule {
+        private final StringRule left;
+        private final StringRule right;
+
+        Or(StringRule left, StringRule right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int evaluateLength(int length) {
+            int l = left.evaluateLength(length);
+            if(l == TRUE) {
+                return TRUE;
+            }
+            int r = right.evaluateLength(length);
+            if(r == TRUE) {
+                return TRUE;
+            }
+            return l == FALSE && r == FALSE ? FALSE : UNKNOWN;
+        }
+
+        @Override
+        boolean evaluate(int length, boolean[] found) {
+            return left.evaluate(length, found) || right.evaluate(length, found);
+        }
+
+        @Override
+        StringRule bind(Map<String, Term> terms) {
+            return new Or(left.bind(terms), right.bind(terms));
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " or " + right + ")";
+        }
+    }
+
+    private static class Not extends StringRule {
+        private final StringRule rule;
+
+        Not(StringRule rule) {
+            this.rule = rule;
+        }
+
+        @Override
+        int evaluateLength(int length) {
+            int result = rule.evaluateLength(length);
+            return result == UNKNOWN ? UNKNOWN : 1 - result;
+        }
+
+        @Override
+        boolean evaluate(int length, boolean[] found) {
+            return !rule.evaluate(length, found);
+        }
+
+        @Override
+        StringRule bind(Map<String, Term> terms) {
+            return new Not(rule.bind(terms));
+        }
+
+        @Override
+        public String toString() {
+            return "not " + rule;
+        }
+    }
+}
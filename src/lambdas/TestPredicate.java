@@ -1,7 +1,9 @@
 package lambdas;
 
+import java.time.Duration;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.*;
 
 interface Evaluate<T>{
@@ -18,6 +20,13 @@ public class TestPredicate {
 
         BiPredicate<String, Integer> checkLength = (str, length) -> str.length() == length;
         System.out.println(checkLength.test("Vatican City", 8));
+
+        // counted and timed under a name (see Instrumented); -Dlambdas.instrument=false turns it off
+        Predicate<String> pCounted = Instrumented.predicate("containsCity", pStr);
+        for(String city : List.of("Vatican City", "Dublin", "Mexico City")) {
+            pCounted.test(city);
+        }
+        System.out.print(Instrumented.report()); // containsCity PREDICATE 3 calls, 66.7% passed
     }
 
     public void supplier() {
@@ -30,6 +39,15 @@ public class TestPredicate {
 
         Supplier<Double> sRandom = () -> Math.random();
         System.out.println(sRandom.get());
+
+        // the clock is read once per 10ms in the background instead of on every get()
+        try(CachedSupplier<LocalTime> coarseTime = CachedSupplier.localTimeClock(Duration.ofMillis(10))) {
+            System.out.println("Coarse time: " + coarseTime.get());
+        }
+
+        // a random number that changes at most once a second
+        CachedSupplier<Double> sCached = CachedSupplier.refreshAfter(sRandom, Duration.ofSeconds(1));
+        System.out.println(sCached.get() + " == " + sCached.get());
     }
 
     public void consumer() {
@@ -47,6 +65,11 @@ public class TestPredicate {
         names.add("Drew"); names.add("Mary");
         names.forEach(printC);
 
+        // the same, but the lines are written in batches by a background thread (see ConsoleSink)
+        try(ConsoleSink sink = ConsoleSink.toStdout()) {
+            names.forEach(sink);
+        }
+
         // BiConsumer
         var mapCapitalCities = new HashMap<String, String>();
         BiConsumer<String, String> biCon = (key, value) -> mapCapitalCities.put(key, value);
@@ -58,6 +81,15 @@ public class TestPredicate {
 
         mapCapitalCities.forEach(mapPrint);
 
+        // from many threads at once: every thread fills its own buffer, flush() merges them
+        MapIngestor<String, String> capitals = MapIngestor.buffered(MapIngestor.lastWins());
+        List.of("Dublin=Ireland", "Paris=France", "Rome=Italy", "Dublin=Ireland")
+                .parallelStream()
+                .map(pair -> pair.split("="))
+                .forEach(pair -> capitals.accept(pair[0], pair[1]));
+        capitals.flush();
+        System.out.println(capitals.map().size() + " capitals, " + capitals.stats()); // 3 capitals, accepted=4, merged=1
+
     }
 
     public void function() {
@@ -79,6 +111,26 @@ public class TestPredicate {
         BiFunction<String, String, String> biFn2 = (s1, s2) -> s1.concat(s2);
         System.out.println("BiFunction: " + biFn2.apply("William", "Shakespeare"));
 
+        // memoization: a pure function can remember its results (see Memoizer)
+        Memoizer<String, Integer> lengths = Memoizer.memoize(fn2, 1_000);
+        Memoizer.Bi<String, String, String> concat = Memoizer.memoize(biFn2, 1_000);
+        for(String city : List.of("Moscow", "Dublin", "Moscow", "Moscow")) {
+            lengths.apply(city);
+            concat.apply(city, "!");
+        }
+        System.out.println("Memoized Function: " + lengths.stats()); // hits=2, misses=2
+        System.out.println("Memoized BiFunction: " + concat.stats());
+
+        // a chain of stages fused into one generated loop instead of nested andThen()/and() calls
+        FusedPipeline<String, Integer> longNames = FusedPipeline.<String>builder()
+                .map(String::trim)
+                .filter(s -> s.startsWith("Mr."))
+                .map(String::length)
+                .filter(n -> n > 10)
+                .build();
+        System.out.println("Fused " + longNames.shape() + ": "
+                + longNames.toList(List.of(" Mr. Joe Bloggs", "Ms. Ann Bloggs", "Mr. Bo "))); // MFMF: [14]
+
     }
 
     public void unaryBinaryOperator() {
@@ -120,6 +172,31 @@ public class TestPredicate {
 
     }
 
+    public void compiledPredicate() {
+        /*
+        * Stacked lambdas rescan the String for every contains()/startsWith(). A StringRule is
+        * compiled into one matcher that scans each String once, whatever the number of terms.
+        * */
+        Predicate<String> lambdas = s -> s.startsWith("Mr.") && (s.contains("City") || s.contains("Town")) && !(s.length() <= 12);
+
+        StringRule rule = StringRule.startsWith("Mr.")
+                .and(StringRule.contains("City").or(StringRule.contains("Town")))
+                .and(StringRule.lengthAtMost(12).not());
+        Predicate<String> compiled = rule.compile();
+        System.out.println(rule);
+
+        for(String s : List.of("Mr. Smith of Vatican City", "Ms. Ann of Townsville", "Mr. Town", "Mr. Jones of Newtown Town")) {
+            System.out.println(s + ": " + lambdas.test(s) + " " + compiled.test(s));
+        }
+
+        // several rules, still one scan per String
+        CompiledRules rules = StringRule.compileAll(List.of(
+                StringRule.contains("City"),
+                StringRule.endsWith("Bloggs"),
+                StringRule.startsWith("Ms.").and(StringRule.lengthBetween(5, 20))));
+        System.out.println("Rules matching \"Ms. Ann Bloggs\": " + rules.matches("Ms. Ann Bloggs")); // {1, 2}
+    }
+
     public static void main(String[] args) {
         /*
          *
@@ -198,6 +275,15 @@ public class TestPredicate {
 
         System.out.println("is " + x + " even? " + check(7, n -> n % 2 == 0)); // false
 
+        System.out.println("Is -5L negative? " + checkLong(-5L, l -> l < 0)); // true
+        System.out.println("Is 2.5 negative? " + checkDouble(2.5, d -> d < 0)); // false
+
+        // whole arrays at once, into a bitmask (bit i for values[i])
+        int[] numbers = {4, -7, 12, 0, -3, 9};
+        System.out.println("Negatives: " + BitSet.valueOf(NumericScreen.negatives(numbers))); // {1, 4}
+        System.out.println("Evens: " + BitSet.valueOf(NumericScreen.evens(numbers))); // {0, 2, 3}
+        System.out.println("Multiples of 3: " + BitSet.valueOf(NumericScreen.evaluate(numbers, n -> n % 3 == 0))); // {2, 3, 4, 5}
+
         String name = "Mr. Joe Bloggs";
         System.out.println("Does " + name + " start with Mr. ? " + check("Mr. Joe Bloggs", s -> s.startsWith("Mr.")));
 
@@ -244,6 +330,20 @@ public class TestPredicate {
         // if z was allowed to change, then the method and the lambda would have 2 different views of 'z'
         filterData(al, lambdaFinal);
 
+        List<String> titles = new ArrayList<>(List.of("Mr. Joe Bloggs", "Ms. Ann Bloggs", "Mr. Sean Kennedy", "Ms. Mary Smith"));
+        int removed = filterDataBulk(titles, s -> s.startsWith("Mr."));
+        System.out.println("Removed " + removed + ": " + titles); // Removed 2: [Ms. Ann Bloggs, Ms. Mary Smith]
+
+        // a predicate that blocks (here it just sleeps 50ms), 16 calls at a time (see BatchEvaluator)
+        try(BatchEvaluator evaluator = BatchEvaluator.create(16, Duration.ofSeconds(5))) {
+            List<String> people = List.of("Mr. Joe Bloggs", "Ms. Ann Bloggs", "Mr. Sean Kennedy", "Ms. Mary Smith");
+            Predicate<String> slowLookup = s -> {
+                LockSupport.parkNanos(Duration.ofMillis(50).toNanos());
+                return s.startsWith("Ms.");
+            };
+            System.out.println("Looked up: " + evaluator.filter(people, slowLookup)); // [Ms. Ann Bloggs, Ms. Mary Smith] after ~50ms, not 200ms
+        }
+
 
         System.out.println("------------------");
 
@@ -278,6 +378,9 @@ public class TestPredicate {
 
         testPredicate.boundMethodReference();
 
+        System.out.println("------------------------------");
+        testPredicate.compiledPredicate();
+
     }
 
     public static void filterData(List<String> list, Predicate<String> lambda) {
@@ -289,8 +392,37 @@ public class TestPredicate {
         }
     }
 
+    /*
+    * Same result as filterData() but in linear time for an ArrayList (see BulkFilter);
+    * returns how many elements were removed. The lambda may be called from several threads for big lists.
+    * */
+    public static int filterDataBulk(List<String> list, Predicate<String> lambda) {
+        return BulkFilter.removeIf(list, lambda);
+    }
+
     public static <T> boolean check(T t, Predicate<T> lambda) {
         return lambda.test(t);
     }
 
+    /*
+    * check(4, n -> n % 2 == 0) picks this overload: an int argument matches an int parameter
+    * without boxing, which is tried before check(T, Predicate<T>).
+    * */
+    public static boolean check(int i, IntEvaluate lambda) {
+        return lambda.isNegative(i);
+    }
+
+    /*
+    * Not overloads of check(): with an implicitly typed lambda like n -> n < 0 the compiler
+    * can't choose between LongEvaluate and DoubleEvaluate, so check(4L, n -> n < 0) would be
+    * ambiguous.
+    * */
+    public static boolean checkLong(long l, LongEvaluate lambda) {
+        return lambda.isNegative(l);
+    }
+
+    public static boolean checkDouble(double d, DoubleEvaluate lambda) {
+        return lambda.isNegative(d);
+    }
+
 }
@@ -9,6 +9,14 @@ public class Cat {
         this.color = color;
     }
 
+    public String getName() {
+        return name;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
     @Override
     public String toString() {
         return "Cat{" +
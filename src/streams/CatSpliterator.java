@@ -0,0 +1,273 @@
+package streams;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class CatSpliterator implements Spliterator<Cat> {
+
+    /*
+    * A lazy source of Cat's for the "name/color" format, used by Streams.streamCats().
+    *
+    * loadCats() is eager: the whole List<Cat> is built before the caller sees the first
+    * Cat, so the heap grows with the file. A Spliterator is what a Stream pulls its elements
+    * from, one at a time with tryAdvance() (or all of them with forEachRemaining()), so the
+    * file is only read as fast as the pipeline consumes it.
+    *
+    * For parallel streams, trySplit() is called to hand part of the work to another thread.
+    * A reader can't be split in the middle, so (like Files.lines() does) trySplit() reads the
+    * next batch of raw lines and returns them as a new Spliterator. The lines are parsed by
+    * whichever thread processes that batch, so parsing runs in parallel too.
+    *
+    * Batches start at BATCH_UNIT lines and grow by BATCH_UNIT on every split but never past
+    * MAX_BATCH. The size of a batch alone doesn't bound anything though: the size of the
+    * root is unknown (Long.MAX_VALUE), so the fork/join framework keeps calling trySplit()
+    * for as long as it returns something, and batches can be read faster than the other
+    * threads consume them. So the lines that have been read but not consumed yet are
+    * counted (batches report every RELEASE_EVERY lines), and once there are
+    * 2 * cores * MAX_BATCH of them trySplit() waits for the consumers first, so at most
+    * that many lines plus one more batch are held in memory. It waits through
+    * ForkJoinPool.managedBlock(), so the pool may start a spare thread to take over the
+    * queued batches rather than the reader holding up a worker. If nothing is
+    * consumed for STALL_MILLIS (e.g. a short-circuiting operation like anyMatch() has
+    * cancelled the queued batches), trySplit() gives up and returns null, and the rest of
+    * the file is read by the thread holding the root, without splitting.
+    *
+    * Malformed lines (see MappedCatLoader) are skipped and reported with their line number.
+    * In a parallel stream the reporter can be called from several threads at once.
+    * */
+
+    static final int BATCH_UNIT = 1 << 10;
+    static final int MAX_BATCH = 1 << 16;
+    static final int RELEASE_EVERY = 64;
+    static final long STALL_MILLIS = 250;
+
+    private final BufferedReader reader;
+    private final BiConsumer<Long, String> malformedLines;
+    private final AtomicLong pendingLines = new AtomicLong(); // read by trySplit(), not consumed yet
+    private final long maxPendingLines = 2L * Runtime.getRuntime().availableProcessors() * MAX_BATCH;
+    private int batch = 0;
+    private long lineNumber = 0;
+
+    public CatSpliterator(BufferedReader reader, BiConsumer<Long, String> malformedLines) {
+        this.reader = reader;
+        this.malformedLines = malformedLines;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Cat> action) {
+        String line;
+        while((line = readLine()) != null) {
+            lineNumber++;
+            Cat cat = parse(line);
+            if(cat != null) {
+                action.accept(cat);
+                return true;
+            }
+            malformedLines.accept(lineNumber, line);
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Cat> action) {
+        String line;
+        while((line = readLine()) != null) {
+            lineNumber++;
+            Cat cat = parse(line);
+            if(cat != null) {
+                action.accept(cat);
+            } else {
+                malformedLines.accept(lineNumber, line);
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<Cat> trySplit() {
+        if(pendingLines.get() >= maxPendingLines && !awaitConsumers()) {
+            return null;
+        }
+        int size = Math.min(batch + BATCH_UNIT, MAX_BATCH);
+        String[] lines = new String[size];
+        int n = 0;
+        String line;
+        while(n < size && (line = readLine()) != null) {
+            lines[n++] = line;
+        }
+        if(n == 0) {
+            return null;
+        }
+
+        batch = size;
+        pendingLines.addAndGet(n);
+        Batch split = new Batch(lines, n, lineNumber, malformedLines, pendingLines);
+        lineNumber += n;
+        return split;
+    }
+
+    /*
+    * Waits until the batches in flight are below the limit; false if the consumers made no
+    * progress for STALL_MILLIS (or the thread was interrupted).
+    * */
+    private boolean awaitConsumers() {
+        Backpressure backpressure = new Backpressure();
+        try {
+            ForkJoinPool.managedBlock(backpressure);
+        }catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        return pendingLines.get() < maxPendingLines;
+    }
+
+    private class Backpressure implements ForkJoinPool.ManagedBlocker {
+        private long lastPending = pendingLines.get();
+        private long lastProgress = System.nanoTime();
+
+        @Override
+        public boolean isReleasable() {
+            long pending = pendingLines.get();
+            if(pending < maxPendingLines) {
+                return true;
+            }
+            long now = System.nanoTime();
+            if(pending < lastPending) {
+                lastPending = pending;
+                lastProgress = now;
+            }
+            return now - lastProgress > TimeUnit.MILLISECONDS.toNanos(STALL_MILLIS);
+        }
+
+        @Override
+        public boolean block() {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+            return isReleasable();
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE; // unknown
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    private String readLine() {
+        try {
+            return reader.readLine();
+        }catch(IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /*
+    * Same rules as split("/") in loadCats(): the name is everything before the first '/',
+    * the color is everything up to the next '/'. Returns null for a malformed line.
+    * */
+    static Cat parse(String line) {
+        int slash = line.indexOf('/');
+        if(slash < 0) {
+            return null;
+        }
+
+        int colorEnd = line.indexOf('/', slash + 1);
+        if(colorEnd < 0) {
+            colorEnd = line.length();
+        }
+
+        for(int i = slash + 1; i < line.length(); i++) {
+            if(line.charAt(i) != '/') {
+                return new Cat(line.substring(0, slash), line.substring(slash + 1, colorEnd));
+            }
+        }
+        return null; // nothing but '/' after the name
+    }
+
+    /*
+    * One batch of raw lines handed out by trySplit(); the lines are parsed when the batch
+    * is traversed. Consumed lines are taken off the root's pending count every
+    * RELEASE_EVERY lines, at the end of the batch and when it is split.
+    * */
+    private static class Batch implements Spliterator<Cat> {
+        private final String[] lines;
+        private final long firstLine;
+        private final BiConsumer<Long, String> malformedLines;
+        private final AtomicLong pendingLines;
+        private int index;
+        private int fence;
+        private int released; // lines before this one are off the pending count
+
+        Batch(String[] lines, int fence, long lineNumber, BiConsumer<Long, String> malformedLines, AtomicLong pendingLines) {
+            this(lines, 0, fence, lineNumber + 1, malformedLines, pendingLines);
+        }
+
+        private Batch(String[] lines, int index, int fence, long firstLine, BiConsumer<Long, String> malformedLines, AtomicLong pendingLines) {
+            this.lines = lines;
+            this.index = index;
+            this.fence = fence;
+            this.released = index;
+            this.firstLine = firstLine;
+            this.malformedLines = malformedLines;
+            this.pendingLines = pendingLines;
+        }
+
+        private void release() {
+            if(index > released) {
+                pendingLines.addAndGet(released - index);
+                released = index;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Cat> action) {
+            while(index < fence) {
+                int i = index++;
+                String line = lines[i];
+                lines[i] = null; // let the line go as soon as it is parsed
+                if(index - released >= RELEASE_EVERY || index == fence) {
+                    release();
+                }
+                Cat cat = parse(line);
+                if(cat != null) {
+                    action.accept(cat);
+                    return true;
+                }
+                malformedLines.accept(firstLine + i, line);
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<Cat> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if(mid <= index) {
+                return null;
+            }
+            release();
+            Batch prefix = new Batch(lines, index, mid, firstLine, malformedLines, pendingLines);
+            index = mid;
+            released = mid; // the lines before mid are the prefix's now
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index; // not SIZED, malformed lines are skipped
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+}
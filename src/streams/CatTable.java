@@ -0,0 +1,277 @@
+package streams;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+public class CatTable {
+
+    /*
+    * A column oriented ("columnar") store for Cat records.
+    *
+    * A List<Cat> keeps one Cat object per record plus two String objects (each with its
+    * own byte[]), so every record costs around 100 bytes of headers and references before
+    * the characters themselves. When most of the columns repeat, this is very wasteful.
+    *
+    * Instead of one object per row, a columnar store keeps one array per column:
+    *
+    *   - color: the distinct colors are kept once in a dictionary (colors[code]) and every
+    *     row only stores its code in a short[]. 2 bytes per row.
+    *
+    *   - name: the UTF-8 bytes of all the names are appended to an arena of byte[] pages
+    *     and every row stores a long reference: page (24 bits), offset in the page (24 bits)
+    *     and length (16 bits). 8 bytes per row plus the characters.
+    *
+    * Queries on the color (filter, group-by, count) only look at the short[] of codes, which
+    * is small and scanned sequentially, so it is very cache friendly. A predicate on the color
+    * is evaluated once per dictionary entry, not once per row. No Cat objects are created
+    * unless get() is called.
+    *
+    * This class is not thread safe: rows must not be added while another thread is reading.
+    * */
+
+    private static final int PAGE_BITS = 24;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS; // 16MB
+    private static final int MAX_NAME_LENGTH = (1 << 16) - 1;
+    private static final int MAX_COLORS = 1 << 16;
+    private static final int MAX_ROWS = Integer.MAX_VALUE - 8; // the largest array length VMs allow
+
+    private final Map<String, Integer> colorCodes = new HashMap<>();
+    private String[] colors = new String[16];
+    private int[] colorCounts = new int[16];
+
+    private short[] colorColumn;
+    private long[] nameColumn;
+    private int size;
+
+    private byte[][] pages = new byte[1][];
+    private int page = 0;
+    private int pageOffset = 0;
+
+    public CatTable() {
+        this(16);
+    }
+
+    public CatTable(int initialCapacity) {
+        colorColumn = new short[Math.max(initialCapacity, 1)];
+        nameColumn = new long[Math.max(initialCapacity, 1)];
+        pages[0] = new byte[(int) Math.min(PAGE_SIZE, Math.max(initialCapacity, 1) * 8L)];
+    }
+
+    public static CatTable of(Collection<Cat> cats) {
+        CatTable table = new CatTable(cats.size());
+        for(Cat cat : cats) {
+            table.add(cat);
+        }
+        return table;
+    }
+
+    public void add(Cat cat) {
+        add(cat.getName(), cat.getColor());
+    }
+
+    public void add(String name, String color) {
+        if(size == colorColumn.length) {
+            int capacity = grow(size);
+            colorColumn = Arrays.copyOf(colorColumn, capacity);
+            nameColumn = Arrays.copyOf(nameColumn, capacity);
+        }
+        colorColumn[size] = (short) encodeColor(color);
+        nameColumn[size] = appendName(name);
+        colorCounts[colorColumn[size] & 0xFFFF]++;
+        size++;
+    }
+
+    /*
+    * The next column length: 1.5 times as long, but never past the largest array the VM can
+    * allocate (the same limit ArrayList uses).
+    * */
+    private static int grow(int size) {
+        if(size >= MAX_ROWS) {
+            throw new OutOfMemoryError("more than " + MAX_ROWS + " rows");
+        }
+        return (int) Math.min(MAX_ROWS, (long) size + (size >> 1) + 1);
+    }
+
+    private int encodeColor(String color) {
+        Integer code = colorCodes.get(color);
+        if(code != null) {
+            return code;
+        }
+
+        int next = colorCodes.size();
+        if(next == MAX_COLORS) {
+            throw new IllegalStateException("More than " + MAX_COLORS + " distinct colors");
+        }
+        if(next == colors.length) {
+            colors = Arrays.copyOf(colors, next * 2);
+            colorCounts = Arrays.copyOf(colorCounts, next * 2);
+        }
+        colors[next] = color;
+        colorCodes.put(color, next);
+        return next;
+    }
+
+    private long appendName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Name longer than " + MAX_NAME_LENGTH + " bytes: " + name);
+        }
+
+        byte[] current = pages[page];
+        if(!fits(current, bytes.length)) {
+            if(current.length < PAGE_SIZE) {
+                // the first page starts small and grows up to PAGE_SIZE
+                long grown = Math.max((long) current.length * 2, pageOffset + bytes.length);
+                pages[page] = current = Arrays.copyOf(current, (int) Math.min(grown, PAGE_SIZE));
+            }
+            if(!fits(current, bytes.length)) {
+                page++;
+                if(page == pages.length) {
+                    pages = Arrays.copyOf(pages, pages.length * 2);
+                }
+                pages[page] = current = new byte[PAGE_SIZE];
+                pageOffset = 0;
+            }
+        }
+
+        System.arraycopy(bytes, 0, current, pageOffset, bytes.length);
+        long ref = ((long) page << 40) | ((long) pageOffset << 16) | bytes.length;
+        pageOffset += bytes.length;
+        return ref;
+    }
+
+    /*
+    * Whether a name of that many bytes goes on the current page. The offset must stay below
+    * PAGE_SIZE even for an empty name: the ref has 24 bits for it, and an offset of
+    * PAGE_SIZE would spill into the page number.
+    * */
+    private boolean fits(byte[] current, int length) {
+        return pageOffset < PAGE_SIZE && pageOffset + length <= current.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int row) {
+        long ref = nameColumn[checkRow(row)];
+        byte[] bytes = pages[(int) (ref >>> 40)];
+        return new String(bytes, (int) (ref >>> 16) & (PAGE_SIZE - 1), (int) ref & MAX_NAME_LENGTH, StandardCharsets.UTF_8);
+    }
+
+    public String color(int row) {
+        return colors[colorColumn[checkRow(row)] & 0xFFFF];
+    }
+
+    public Cat get(int row) {
+        return new Cat(name(row), color(row));
+    }
+
+    private int checkRow(int row) {
+        if(row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        }
+        return row;
+    }
+
+    public int distinctColors() {
+        return colorCodes.size();
+    }
+
+    public long count(String color) {
+        Integer code = colorCodes.get(color);
+        return code == null ? 0 : colorCounts[code];
+    }
+
+    public Map<String, Long> countByColor() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for(int code = 0; code < colorCodes.size(); code++) {
+            counts.put(colors[code], (long) colorCounts[code]);
+        }
+        return counts;
+    }
+
+    /*
+    * Rows (in insertion order) whose color passes the predicate. The predicate is only
+    * tested once per distinct color.
+    * */
+    public int[] filter(Predicate<String> colorTest) {
+        boolean[] selected = new boolean[colorCodes.size()];
+        int matches = 0;
+        for(int code = 0; code < selected.length; code++) {
+            selected[code] = colorTest.test(colors[code]);
+            if(selected[code]) {
+                matches += colorCounts[code];
+            }
+        }
+
+        int[] rows = new int[matches];
+        int n = 0;
+        for(int row = 0; row < size && n < matches; row++) {
+            if(selected[colorColumn[row] & 0xFFFF]) {
+                rows[n++] = row;
+            }
+        }
+        return rows;
+    }
+
+    public int[] filter(String color) {
+        Integer code = colorCodes.get(color);
+        if(code == null) {
+            return new int[0];
+        }
+
+        short wanted = code.shortValue();
+        int[] rows = new int[colorCounts[code]];
+        int n = 0;
+        for(int row = 0; row < size && n < rows.length; row++) {
+            if(colorColumn[row] == wanted) {
+                rows[n++] = row;
+            }
+        }
+        return rows;
+    }
+
+    /*
+    * Group-by-color as a counting sort: the counts are already known, so every row index
+    * is written straight into its slot of a pre-sized int[] per color.
+    * */
+    public Map<String, int[]> groupByColor() {
+        int distinct = colorCodes.size();
+        int[][] groups = new int[distinct][];
+        for(int code = 0; code < distinct; code++) {
+            groups[code] = new int[colorCounts[code]];
+        }
+
+        int[] next = new int[distinct];
+        for(int row = 0; row < size; row++) {
+            int code = colorColumn[row] & 0xFFFF;
+            groups[code][next[code]++] = row;
+        }
+
+        Map<String, int[]> result = new LinkedHashMap<>();
+        for(int code = 0; code < distinct; code++) {
+            result.put(colors[code], groups[code]);
+        }
+        return result;
+    }
+
+    /*
+    * Approximate heap used by the columns, the name arena and the dictionary.
+    * */
+    public long bytesUsed() {
+        long bytes = (long) colorColumn.length * Short.BYTES + (long) nameColumn.length * Long.BYTES;
+        for(int i = 0; i <= page; i++) {
+            bytes += pages[i].length;
+        }
+        for(int code = 0; code < colorCodes.size(); code++) {
+            bytes += 40 + colors[code].length(); // String + byte[] + map entry, roughly
+        }
+        return bytes;
+    }
+}
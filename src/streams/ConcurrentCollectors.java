@@ -0,0 +1,241 @@
+package streams;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+public class ConcurrentCollectors {
+
+    /*
+    * toMap() / grouping collectors that scale on parallel streams.
+    *
+    * Collectors.toMap(key, value, (s1, s2) -> s1 + "," + s2) has 2 problems:
+    *   - the merge function builds a new String on every duplicate key, copying everything
+    *     collected so far for that key, so n duplicates cost O(n^2).
+    *   - on a parallel stream every thread fills its own HashMap and the combiner merges
+    *     them pair by pair, which (again) merges the Strings and runs on fewer and fewer
+    *     threads towards the end.
+    *
+    * These collectors are CONCURRENT: all the threads add into one shared container, so
+    * there is nothing to combine at the end. The container is a set of "shards", each a
+    * ConcurrentHashMap, picked by the hash of the key. Every key holds a mutable accumulator
+    * (a StringJoiner, an ArrayList, ...) that is only turned into the final value once, by
+    * the finisher.
+    *
+    * When many threads hit the same key (a skewed distribution) the accumulator of that key
+    * would become the bottleneck. So, like LongAdder, a key starts with one accumulator and a
+    * lock; the first time a thread finds it locked the key is "inflated" into one accumulator
+    * per stripe and threads spread over the stripes. The stripes are combined by the finisher.
+    *
+    * As the collectors are UNORDERED, the order of the values within a key is not defined on
+    * a parallel stream.
+    * */
+
+    private static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    private ConcurrentCollectors() {
+    }
+
+    /*
+    * Values of the same key joined with the delimiter (the toMap() merge example in
+    * Streams.collection()).
+    * */
+    public static <T, K> Collector<T, ?, Map<K, String>> toMapJoining(Function<? super T, ? extends K> keyMapper,
+                                                                    Function<? super T, ? extends CharSequence> valueMapper,
+                                                                    CharSequence delimiter) {
+        return toConcurrentMap(keyMapper,
+                () -> new StringJoiner(delimiter),
+                (joiner, t) -> joiner.add(valueMapper.apply(t)),
+                StringJoiner::merge,
+                StringJoiner::toString);
+    }
+
+    public static <T, K, V> Collector<T, ?, Map<K, List<V>>> groupingToList(Function<? super T, ? extends K> keyMapper,
+                                                                          Function<? super T, ? extends V> valueMapper) {
+        return toConcurrentMap(keyMapper,
+                () -> new ArrayList<V>(),
+                (list, t) -> list.add(valueMapper.apply(t)),
+                (list1, list2) -> {
+                    list1.addAll(list2);
+                    return list1;
+                },
+                list -> (List<V>) list);
+    }
+
+    /*
+    * The general form: every key gets containers from accumulatorSupplier, the elements are
+    * added with accumulator, the containers of a key are merged with combiner and the result
+    * for the key is finisher(container).
+    * */
+    public static <T, K, A, R> Collector<T, ?, Map<K, R>> toConcurrentMap(Function<? super T, ? extends K> keyMapper,
+                                                                        Supplier<A> accumulatorSupplier,
+                                                                        BiConsumer<A, ? super T> accumulator,
+                                                                        BinaryOperator<A> combiner,
+                                                                        Function<A, R> finisher) {
+        return Collector.of(
+                () -> new ShardedMap<K, A>(STRIPES),
+                (map, t) -> map.cell(keyMapper.apply(t), accumulatorSupplier).accumulate(t, accumulator, accumulatorSupplier),
+                (left, right) -> left.merge(right, combiner),
+                map -> map.finish(combiner, finisher),
+                Collector.Characteristics.CONCURRENT,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    private static int stripes(int cores) {
+        int n = 1;
+        while(n < cores * 2) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    private static int probe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id * 0x9E3779B97F4A7C15L >>> 32);
+        return h ^ (h >>> 16);
+    }
+
+    private static class ShardedMap<K, A> {
+        private final ConcurrentHashMap<K, Cell<A>>[] shards;
+        private final int mask;
+
+        ShardedMap(int shardCount) {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            ConcurrentHashMap<K, Cell<A>>[] array = new ConcurrentHashMap[shardCount];
+            shards = array;
+            for(int i = 0; i < shardCount; i++) {
+                shards[i] = new ConcurrentHashMap<>();
+            }
+            mask = shardCount - 1;
+        }
+
+        private ConcurrentHashMap<K, Cell<A>> shard(K key) {
+            int h = key == null ? 0 : key.hashCode();
+            h *= 0x9E3779B9; // ConcurrentHashMap uses the low bits, the shard uses the high ones
+            return shards[(h >>> 16) & mask];
+        }
+
+        Cell<A> cell(K key, Supplier<A> supplier) {
+            if(key == null) {
+                throw new NullPointerException("null key");
+            }
+            ConcurrentHashMap<K, Cell<A>> shard = shard(key);
+            Cell<A> cell = shard.get(key); // lock free when the key is already there
+            if(cell == null) {
+                cell = shard.computeIfAbsent(key, k -> new Cell<>(supplier.get()));
+            }
+            return cell;
+        }
+
+        ShardedMap<K, A> merge(ShardedMap<K, A> other, BinaryOperator<A> combiner) {
+            for(ConcurrentHashMap<K, Cell<A>> shard : other.shards) {
+                shard.forEach((key, otherCell) -> {
+                    A otherValue = otherCell.combine(combiner);
+                    Cell<A> cell = shard(key).putIfAbsent(key, new Cell<>(otherValue));
+                    if(cell != null) {
+                        cell.mergeIntoBase(otherValue, combiner);
+                    }
+                });
+            }
+            return this;
+        }
+
+        <R> Map<K, R> finish(BinaryOperator<A> combiner, Function<A, R> finisher) {
+            int size = 0;
+            for(ConcurrentHashMap<K, Cell<A>> shard : shards) {
+                size += shard.size();
+            }
+            Map<K, R> result = new HashMap<>(size * 4 / 3 + 1);
+            for(ConcurrentHashMap<K, Cell<A>> shard : shards) {
+                shard.forEach((key, cell) -> result.put(key, finisher.apply(cell.combine(combiner))));
+            }
+            return result;
+        }
+    }
+
+    private static class Cell<A> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private A base;
+        private volatile AtomicReferenceArray<Stripe<A>> stripes;
+
+        Cell(A base) {
+            this.base = base;
+        }
+
+        <T> void accumulate(T t, BiConsumer<A, ? super T> accumulator, Supplier<A> supplier) {
+            AtomicReferenceArray<Stripe<A>> striped = stripes;
+            if(striped == null) {
+                if(lock.tryLock()) {
+                    try {
+                        accumulator.accept(base, t);
+                        return;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                striped = inflate();
+            }
+
+            int i = probe() & (striped.length() - 1);
+            Stripe<A> stripe = striped.get(i);
+            if(stripe == null) {
+                striped.compareAndSet(i, null, new Stripe<>(supplier.get()));
+                stripe = striped.get(i);
+            }
+            synchronized(stripe) {
+                accumulator.accept(stripe.container, t);
+            }
+        }
+
+        private AtomicReferenceArray<Stripe<A>> inflate() {
+            synchronized(this) {
+                if(stripes == null) {
+                    stripes = new AtomicReferenceArray<>(STRIPES);
+                }
+                return stripes;
+            }
+        }
+
+        void mergeIntoBase(A other, BinaryOperator<A> combiner) {
+            lock.lock();
+            try {
+                base = combiner.apply(base, other);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // only called once all the accumulation is over
+        A combine(BinaryOperator<A> combiner) {
+            AtomicReferenceArray<Stripe<A>> striped = stripes;
+            if(striped != null) {
+                for(int i = 0; i < striped.length(); i++) {
+                    Stripe<A> stripe = striped.get(i);
+                    if(stripe != null) {
+                        base = combiner.apply(base, stripe.container);
+                    }
+                }
+                stripes = null;
+            }
+            return base;
+        }
+    }
+
+    private static class Stripe<A> {
+        private final A container;
+
+        Stripe(A container) {
+            this.container = container;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package streams;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+public class IntKeySorter {
+
+    /*
+    * Sorting records by an int key (e.g. Person::getAge) without comparisons.
+    *
+    * sorted(Comparator.comparing(p -> p.getAge())) boxes the age twice per comparison and
+    * does O(n log n) comparisons. But ages are small ints, so we can do better:
+    *
+    *   - the keys are extracted ONCE into an int[] (no boxing).
+    *   - counting sort: when the keys only span a small range (max - min), count how many
+    *     records have each key, turn the counts into start positions (prefix sums) and copy
+    *     every record straight to its place. O(n + range).
+    *   - LSD radix sort: when the range is big, do the same thing one byte of the key at a
+    *     time, starting with the lowest byte. 4 passes at most, fewer if the range is smaller.
+    *
+    * Both are stable: records with the same key keep their original order, just like
+    * sorted() with a Comparator.
+    *
+    * Parallel mode: the array is split into one chunk per core. Every chunk counts its own
+    * keys (histogram) in parallel; the counts of all the chunks give every chunk its own start
+    * positions (chunk 0 first for each key, so it stays stable); then all the chunks copy
+    * their records (scatter) in parallel.
+    *
+    *   Person[] people = ...;
+    *   IntKeySorter.sort(people, Person::getAge);
+    *   List<Person> byAge = people.stream().collect(IntKeySorter.sortingBy(Person::getAge));
+    * */
+
+    private static final int COUNTING_RANGE_LIMIT = 1 << 16;
+    private static final int RADIX_BITS = 8;
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private IntKeySorter() {
+    }
+
+    public static <T> void sort(T[] items, ToIntFunction<? super T> key) {
+        sort(items, key, false);
+    }
+
+    public static <T> void parallelSort(T[] items, ToIntFunction<? super T> key) {
+        sort(items, key, true);
+    }
+
+    public static <T> List<T> sorted(Collection<? extends T> items, ToIntFunction<? super T> key) {
+        @SuppressWarnings("unchecked")
+        T[] array = (T[]) items.toArray();
+        sort(array, key, false);
+        return new ArrayList<>(Arrays.asList(array));
+    }
+
+    /*
+    * Collects the stream into a List sorted by the key. The elements are gathered in
+    * encounter order, so the sort is stable on parallel streams too.
+    * */
+    public static <T> Collector<T, ?, List<T>> sortingBy(ToIntFunction<? super T> key) {
+        return Collector.of(
+                ArrayList<T>::new,
+                ArrayList::add,
+                (list1, list2) -> {
+                    list1.addAll(list2);
+                    return list1;
+                },
+                list -> {
+                    @SuppressWarnings("unchecked")
+                    T[] array = (T[]) list.toArray();
+                    sort(array, key, list.size() >= PARALLEL_THRESHOLD);
+                    return new ArrayList<>(Arrays.asList(array));
+                });
+    }
+
+    private static <T> void sort(T[] items, ToIntFunction<? super T> key, boolean parallel) {
+        int n = items.length;
+        if(n < 2) {
+            return;
+        }
+        parallel = parallel && n >= PARALLEL_THRESHOLD;
+
+        int[] keys = new int[n];
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for(int i = 0; i < n; i++) {
+            keys[i] = key.applyAsInt(items[i]);
+            min = Math.min(min, keys[i]);
+            max = Math.max(max, keys[i]);
+        }
+        if(min == max) {
+            return;
+        }
+
+        // shift the keys so the smallest is 0; the range is then an unsigned int
+        for(int i = 0; i < n; i++) {
+            keys[i] -= min;
+        }
+        int range = max - min;
+
+        Object[] src = items;
+        Object[] dst = new Object[n];
+        int[] srcKeys = keys;
+        int[] dstKeys = new int[n];
+
+        if(Integer.compareUnsigned(range, COUNTING_RANGE_LIMIT) < 0) {
+            pass(srcKeys, src, dstKeys, dst, 0, -1, range + 1, parallel);
+            System.arraycopy(dst, 0, items, 0, n);
+            return;
+        }
+
+        int bits = 32 - Integer.numberOfLeadingZeros(range);
+        int buckets = 1 << RADIX_BITS;
+        for(int shift = 0; shift < bits; shift += RADIX_BITS) {
+            pass(srcKeys, src, dstKeys, dst, shift, buckets - 1, buckets, parallel);
+
+            Object[] swap = src;
+            src = dst;
+            dst = swap;
+            int[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+        }
+        if(src != items) {
+            System.arraycopy(src, 0, items, 0, n);
+        }
+    }
+
+    /*
+    * One counting pass on the digit (key >>> shift) & mask: histogram, prefix sums, scatter.
+    * */
+    private static void pass(int[] srcKeys, Object[] src, int[] dstKeys, Object[] dst,
+                             int shift, int mask, int buckets, boolean parallel) {
+        int n = src.length;
+        int chunks = parallel ? Math.min(Runtime.getRuntime().availableProcessors(), n / (PARALLEL_THRESHOLD / 4)) : 1;
+        chunks = Math.max(chunks, 1);
+        int chunkSize = (n + chunks - 1) / chunks;
+        int[][] counts = new int[chunks][buckets];
+
+        IntStream histogram = IntStream.range(0, chunks);
+        (parallel ? histogram.parallel() : histogram).forEach(c -> {
+            int[] count = counts[c];
+            int end = Math.min(n, (c + 1) * chunkSize);
+            for(int i = c * chunkSize; i < end; i++) {
+                count[(srcKeys[i] >>> shift) & mask]++;
+            }
+        });
+
+        // start position of every (bucket, chunk): all the smaller buckets, then the earlier chunks
+        int position = 0;
+        for(int b = 0; b < buckets; b++) {
+            for(int c = 0; c < chunks; c++) {
+                int count = counts[c][b];
+                counts[c][b] = position;
+                position += count;
+            }
+        }
+
+        IntStream scatter = IntStream.range(0, chunks);
+        (parallel ? scatter.parallel() : scatter).forEach(c -> {
+            int[] next = counts[c];
+            int end = Math.min(n, (c + 1) * chunkSize);
+            for(int i = c * chunkSize; i < end; i++) {
+                int to = next[(srcKeys[i] >>> shift) & mask]++;
+                dstKeys[to] = srcKeys[i];
+                dst[to] = src[i];
+            }
+        });
+    }
+}
@@ -0,0 +1,174 @@
+package streams;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+public class IntObjectMap<V> {
+
+    /*
+    * A map from int keys to objects that never boxes the key.
+    *
+    * A HashMap<Integer, V> needs an Integer for every key it is asked about (Integer.valueOf
+    * only caches -128..127) and a Node object for every entry. This map uses "open addressing":
+    * keys and values live in two parallel arrays; a key's slot is found from its hash and, if
+    * that slot is taken by another key, the next slots are tried in turn (linear probing).
+    *
+    * A slot is empty when its value is null, so null values are not allowed. The table is
+    * kept at most half full so probe sequences stay short.
+    * */
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public IntObjectMap() {
+        this(8);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    static int mix(int key) {
+        int h = key * 0x9E3779B9; // golden ratio, spreads nearby keys across the table
+        return h ^ (h >>> 16);
+    }
+
+    private int slot(int key) {
+        int i = mix(key) & mask;
+        while(values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        return (V) values[slot(key)];
+    }
+
+    public boolean containsKey(int key) {
+        return values[slot(key)] != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        Objects.requireNonNull(value, "value");
+        int i = slot(key);
+        V old = (V) values[i];
+        keys[i] = key;
+        values[i] = value;
+        if(old == null && ++size * 2 > keys.length) {
+            grow();
+        }
+        return old;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(int key, IntFunction<? extends V> mapping) {
+        int i = slot(key);
+        V value = (V) values[i];
+        if(value == null) {
+            value = Objects.requireNonNull(mapping.apply(key), "value");
+            keys[i] = key;
+            values[i] = value;
+            if(++size * 2 > keys.length) {
+                grow();
+            }
+        }
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Entry<? super V> action) {
+        for(int i = 0; i < keys.length; i++) {
+            if(values[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /*
+    * Replaces every value with function(value), in place. The result may hold a different
+    * type of value, which is how a grouping collector turns its accumulators into results.
+    * */
+    @SuppressWarnings("unchecked")
+    public <R> IntObjectMap<R> replaceValues(Function<? super V, ? extends R> function) {
+        for(int i = 0; i < values.length; i++) {
+            if(values[i] != null) {
+                values[i] = Objects.requireNonNull(function.apply((V) values[i]), "value");
+            }
+        }
+        return (IntObjectMap<R>) this;
+    }
+
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for(int i = 0; i < keys.length; i++) {
+            if(values[i] != null) {
+                result[n++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    /*
+    * Boxed copy, when a java.util.Map is needed.
+    * */
+    public Map<Integer, V> toMap() {
+        Map<Integer, V> map = new HashMap<>();
+        forEach(map::put);
+        return map;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        mask = keys.length - 1;
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldValues[i] != null) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        int[] sorted = keys();
+        Arrays.sort(sorted);
+        StringBuilder sb = new StringBuilder("{");
+        for(int key : sorted) {
+            if(sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(key).append('=').append(get(key));
+        }
+        return sb.append('}').toString();
+    }
+
+    @FunctionalInterface
+    public interface Entry<V> {
+        void accept(int key, V value);
+    }
+}
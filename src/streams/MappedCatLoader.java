@@ -0,0 +1,211 @@
+package streams;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+public class MappedCatLoader {
+
+    /*
+    * A parallel loader for the "name/color" format used by Cats.txt.
+    *
+    * Streams.loadCats() reads one line at a time with Files.lines(), builds a String for
+    * the line and a String[] from split("/") and then adds the Cat to a single ArrayList.
+    * That is fine for a few lines but it is single threaded and creates 4 objects per line.
+    *
+    * This loader works in 3 steps:
+    *   1.- The file is divided into chunks (a few per core). Each chunk boundary is moved
+    *       forward to the byte after the next '\n' so no line is ever split in two.
+    *   2.- Each chunk is memory-mapped (FileChannel.map) and parsed in parallel straight
+    *       from the mapped bytes. Only the name and the color Strings are created.
+    *   3.- The per-chunk lists are joined in file order, so the result is the same List<Cat>
+    *       as loadCats() would return.
+    *
+    * A line is malformed when split("/") would not give at least 2 parts (no '/' at all, or
+    * nothing but '/' after the first one). loadCats() throws ArrayIndexOutOfBoundsException
+    * on those; here they are skipped and reported with their line number (1 based).
+    *
+    * A single mapping can't be bigger than Integer.MAX_VALUE bytes, so chunks are capped at
+    * MAX_CHUNK_SIZE which also means files bigger than 2GB are fine.
+    * */
+
+    static final int MAX_CHUNK_SIZE = 256 * 1024 * 1024;
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final int CHUNKS_PER_CORE = 4;
+
+    public static List<Cat> load(String fileName) {
+        return load(fileName, (lineNumber, line) ->
+                System.err.println("Malformed cat on line " + lineNumber + ": '" + line + "'"));
+    }
+
+    public static List<Cat> load(String fileName, BiConsumer<Long, String> malformedLines) {
+        try(FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            Chunk[] chunks = new Chunk[bounds.length - 1];
+
+            IntStream.range(0, chunks.length)
+                    .parallel()
+                    .forEach(i -> chunks[i] = parse(channel, bounds[i], bounds[i + 1]));
+
+            int total = 0;
+            for(Chunk chunk : chunks) {
+                total += chunk.cats.size();
+            }
+
+            List<Cat> cats = new ArrayList<>(total);
+            long linesBefore = 0;
+            for(Chunk chunk : chunks) {
+                cats.addAll(chunk.cats);
+                for(int i = 0; i < chunk.malformedLines.size(); i++) {
+                    malformedLines.accept(linesBefore + chunk.malformedIndexes.get(i) + 1,
+                            chunk.malformedLines.get(i));
+                }
+                linesBefore += chunk.lineCount;
+            }
+            return cats;
+
+        }catch(IOException ioe) {
+            ioe.printStackTrace();
+        }catch(UncheckedIOException uioe) {
+            uioe.getCause().printStackTrace();
+        }
+
+        return new ArrayList<>();
+    }
+
+    /*
+    * Returns n + 1 offsets for n chunks; every offset (except 0 and the file size) is the
+    * first byte of a line.
+    * */
+    static long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int cores = Runtime.getRuntime().availableProcessors();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, size / ((long) cores * CHUNKS_PER_CORE) + 1);
+        chunkSize = Math.min(chunkSize, MAX_CHUNK_SIZE);
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long start = 0;
+        while(start < size) {
+            long end = start + chunkSize;
+            if(end >= size) {
+                end = size;
+            } else {
+                end = nextLineStart(channel, end, size);
+                if(end - start > Integer.MAX_VALUE) {
+                    throw new IOException("Line starting near byte " + start + " is too long to map");
+                }
+            }
+            bounds.add(end);
+            start = end;
+        }
+
+        long[] result = new long[bounds.size()];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while(position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if(read <= 0) {
+                break;
+            }
+            for(int i = 0; i < read; i++) {
+                if(buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static Chunk parse(FileChannel channel, long start, long end) {
+        Chunk chunk = new Chunk();
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        }catch(IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+
+        int limit = buffer.limit();
+        byte[] scratch = new byte[256];
+        int lineStart = 0;
+        int slash = -1; // first '/' of the current line
+        for(int i = 0; i <= limit; i++) {
+            byte b = i < limit ? buffer.get(i) : (byte) '\n';
+            if(b == '/') {
+                if(slash < 0) {
+                    slash = i;
+                }
+            } else if(b == '\n') {
+                if(i < limit || i > lineStart) { // no empty line after a trailing '\n'
+                    int lineEnd = i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+                    if(scratch.length < lineEnd - lineStart) {
+                        scratch = new byte[lineEnd - lineStart];
+                    }
+                    parseLine(buffer, lineStart, slash, lineEnd, scratch, chunk);
+                    chunk.lineCount++;
+                }
+                lineStart = i + 1;
+                slash = -1;
+            }
+        }
+        return chunk;
+    }
+
+    private static void parseLine(ByteBuffer buffer, int lineStart, int slash, int lineEnd,
+                                  byte[] scratch, Chunk chunk) {
+        // the color is everything up to the next '/' (split("/") ignores any further parts)
+        int colorEnd = lineEnd;
+        boolean onlySlashes = true;
+        if(slash >= 0) {
+            for(int i = slash + 1; i < lineEnd; i++) {
+                if(buffer.get(i) == '/') {
+                    if(colorEnd == lineEnd) {
+                        colorEnd = i;
+                    }
+                } else {
+                    onlySlashes = false;
+                    if(colorEnd != lineEnd) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        int length = lineEnd - lineStart;
+        buffer.get(lineStart, scratch, 0, length);
+        if(slash < 0 || onlySlashes) {
+            chunk.malformedIndexes.add(chunk.lineCount);
+            chunk.malformedLines.add(new String(scratch, 0, length, StandardCharsets.UTF_8));
+            return;
+        }
+
+        String name = new String(scratch, 0, slash - lineStart, StandardCharsets.UTF_8);
+        String color = new String(scratch, slash + 1 - lineStart, colorEnd - slash - 1, StandardCharsets.UTF_8);
+        chunk.cats.add(new Cat(name, color));
+    }
+
+    private static class Chunk {
+        private final List<Cat> cats = new ArrayList<>();
+        private final List<Long> malformedIndexes = new ArrayList<>();
+        private final List<String> malformedLines = new ArrayList<>();
+        private long lineCount;
+    }
+}
@@ -0,0 +1,157 @@
+package streams;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+public class PrimitiveCollectors {
+
+    /*
+    * Grouping collectors for int, long and boolean keys.
+    *
+    * Collectors.groupingBy(String::length) has a Function<T, Integer> as the key function,
+    * so every element boxes its key (Integer.valueOf only caches -128..127) before it is
+    * looked up in a HashMap<Integer, List<T>>. These collectors take a ToIntFunction /
+    * ToLongFunction / Predicate instead, so the key stays primitive all the way into an
+    * IntObjectMap / LongObjectMap (open addressing, no Node per entry) or a two-slot array.
+    *
+    * Like groupingBy(), each one takes an optional "downstream" collector that decides what
+    * to do with the values of a group e.g. Collectors.toSet(), Collectors.counting() or
+    * Collectors.summingInt(...). The default is Collectors.toList().
+    *
+    *   IntObjectMap<List<String>> byLength = names.collect(groupingByInt(String::length));
+    *   IntObjectMap<Long> peoplePerAge = people.collect(groupingByInt(Person::getAge, counting()));
+    * */
+
+    private PrimitiveCollectors() {
+    }
+
+    public static <T> Collector<T, ?, IntObjectMap<List<T>>> groupingByInt(ToIntFunction<? super T> classifier) {
+        return groupingByInt(classifier, Collectors.toList());
+    }
+
+    public static <T, A, D> Collector<T, ?, IntObjectMap<D>> groupingByInt(ToIntFunction<? super T> classifier,
+                                                                         Collector<? super T, A, D> downstream) {
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        BiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        Function<A, D> downstreamFinisher = downstream.finisher();
+        IntFunction<A> newContainer = key -> downstreamSupplier.get();
+
+        BiConsumer<IntObjectMap<A>, T> accumulator = (map, t) ->
+                downstreamAccumulator.accept(map.computeIfAbsent(classifier.applyAsInt(t), newContainer), t);
+
+        BinaryOperator<IntObjectMap<A>> combiner = (left, right) -> {
+            right.forEach((key, container) -> {
+                A existing = left.get(key);
+                left.put(key, existing == null ? container : downstreamCombiner.apply(existing, container));
+            });
+            return left;
+        };
+
+        return Collector.of(IntObjectMap::new, accumulator, combiner,
+                map -> map.replaceValues(downstreamFinisher));
+    }
+
+    public static <T> Collector<T, ?, LongObjectMap<List<T>>> groupingByLong(ToLongFunction<? super T> classifier) {
+        return groupingByLong(classifier, Collectors.toList());
+    }
+
+    public static <T, A, D> Collector<T, ?, LongObjectMap<D>> groupingByLong(ToLongFunction<? super T> classifier,
+                                                                           Collector<? super T, A, D> downstream) {
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        BiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        Function<A, D> downstreamFinisher = downstream.finisher();
+        LongFunction<A> newContainer = key -> downstreamSupplier.get();
+
+        BiConsumer<LongObjectMap<A>, T> accumulator = (map, t) ->
+                downstreamAccumulator.accept(map.computeIfAbsent(classifier.applyAsLong(t), newContainer), t);
+
+        BinaryOperator<LongObjectMap<A>> combiner = (left, right) -> {
+            right.forEach((key, container) -> {
+                A existing = left.get(key);
+                left.put(key, existing == null ? container : downstreamCombiner.apply(existing, container));
+            });
+            return left;
+        };
+
+        return Collector.of(LongObjectMap::new, accumulator, combiner,
+                map -> map.replaceValues(downstreamFinisher));
+    }
+
+    /*
+    * Partitioning is grouping with only two keys, so there is no need for a map at all:
+    * slot 0 holds the false group and slot 1 the true group.
+    * */
+    public static <T> Collector<T, ?, Partition<List<T>>> partitioningBy(Predicate<? super T> predicate) {
+        return partitioningBy(predicate, Collectors.toList());
+    }
+
+    public static <T, A, D> Collector<T, ?, Partition<D>> partitioningBy(Predicate<? super T> predicate,
+                                                                       Collector<? super T, A, D> downstream) {
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        BiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        Function<A, D> downstreamFinisher = downstream.finisher();
+
+        Supplier<Object[]> supplier = () -> new Object[]{downstreamSupplier.get(), downstreamSupplier.get()};
+
+        BiConsumer<Object[], T> accumulator = (slots, t) -> {
+            @SuppressWarnings("unchecked")
+            A container = (A) slots[predicate.test(t) ? 1 : 0];
+            downstreamAccumulator.accept(container, t);
+        };
+
+        BinaryOperator<Object[]> combiner = (left, right) -> {
+            for(int i = 0; i < 2; i++) {
+                @SuppressWarnings("unchecked")
+                A merged = downstreamCombiner.apply((A) left[i], (A) right[i]);
+                left[i] = merged;
+            }
+            return left;
+        };
+
+        Function<Object[], Partition<D>> finisher = slots -> {
+            @SuppressWarnings("unchecked")
+            Partition<D> partition = new Partition<>(downstreamFinisher.apply((A) slots[0]),
+                    downstreamFinisher.apply((A) slots[1]));
+            return partition;
+        };
+
+        return Collector.of(supplier, accumulator, combiner, finisher);
+    }
+
+    public static class Partition<D> {
+        private final D falseGroup;
+        private final D trueGroup;
+
+        Partition(D falseGroup, D trueGroup) {
+            this.falseGroup = falseGroup;
+            this.trueGroup = trueGroup;
+        }
+
+        public D get(boolean key) {
+            return key ? trueGroup : falseGroup;
+        }
+
+        public Map<Boolean, D> toMap() {
+            return Map.of(false, falseGroup, true, trueGroup);
+        }
+
+        @Override
+        public String toString() {
+            return "{false=" + falseGroup + ", true=" + trueGroup + "}";
+        }
+    }
+}
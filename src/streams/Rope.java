@@ -0,0 +1,160 @@
+package streams;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collector;
+
+public final class Rope implements CharSequence {
+
+    /*
+    * A rope is a String made of pieces: a binary tree whose leaves hold text and whose
+    * inner nodes just say "left followed by right".
+    *
+    * Stream.of(...).reduce("", (s, c) -> s + c) copies the whole result so far on every
+    * step, so reducing n tokens costs O(n^2). Concatenating two ropes only creates a new
+    * node pointing at both of them - the text is not copied - so it is O(1). The text is
+    * copied once, when toString() flattens the tree into a String (the result is cached).
+    *
+    * Concatenation is associative: (a + b) + c and a + (b + c) give the same text. That is
+    * exactly what reduce() and a parallel stream's combiner need, so partial results built
+    * by different threads can be joined cheaply in any grouping.
+    *
+    *   String name = Stream.of("s", "e", "a", "n")
+    *           .map(Rope::of)
+    *           .reduce(Rope.EMPTY, Rope::concat)
+    *           .toString();
+    *
+    * Tiny pieces (up to SMALL chars together) are copied into one leaf instead, so reducing
+    * single characters doesn't build a node per character.
+    *
+    * A rope is immutable and safe to share between threads. The tree may be very deep (a
+    * sequential reduce builds a "left leaning" chain) so it is flattened with a loop and an
+    * explicit stack, never with recursion.
+    * */
+
+    static final int SMALL = 32;
+
+    public static final Rope EMPTY = new Rope("");
+
+    private final String leaf; // null for inner nodes
+    private final Rope left;
+    private final Rope right;
+    private final int length;
+    private String flat; // cached toString(), racy but harmless like String.hash
+
+    private Rope(String leaf) {
+        this.leaf = leaf;
+        this.left = null;
+        this.right = null;
+        this.length = leaf.length();
+    }
+
+    private Rope(Rope left, Rope right) {
+        this.leaf = null;
+        this.left = left;
+        this.right = right;
+        this.length = Math.addExact(left.length, right.length);
+    }
+
+    public static Rope of(CharSequence text) {
+        if(text instanceof Rope) {
+            return (Rope) text;
+        }
+        return text.length() == 0 ? EMPTY : new Rope(text.toString());
+    }
+
+    public Rope concat(CharSequence text) {
+        Rope other = of(text);
+        if(other.length == 0) {
+            return this;
+        }
+        if(length == 0) {
+            return other;
+        }
+
+        if(other.leaf != null && length + other.length <= SMALL && leaf != null) {
+            return new Rope(leaf + other.leaf);
+        }
+        if(other.leaf != null && leaf == null && right.leaf != null && right.length + other.length <= SMALL) {
+            // keep appending single chars to the last small leaf
+            return new Rope(left, new Rope(right.leaf + other.leaf));
+        }
+        return new Rope(this, other);
+    }
+
+    /*
+    * The reducer, for reduce(Rope.EMPTY, Rope.concatenation()).
+    * */
+    public static BinaryOperator<Rope> concatenation() {
+        return Rope::concat;
+    }
+
+    /*
+    * Like Collectors.joining() but the partial results (from each thread of a parallel
+    * stream) are ropes, so combining them doesn't copy any text.
+    * */
+    public static Collector<CharSequence, ?, String> joining() {
+        return Collector.of(
+                () -> new Rope[]{EMPTY},
+                (holder, text) -> holder[0] = holder[0].concat(text),
+                (holder1, holder2) -> {
+                    holder1[0] = holder1[0].concat(holder2[0]);
+                    return holder1;
+                },
+                holder -> holder[0].toString());
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /*
+    * Walking down a deep tree for every char would be slow, so the first charAt() flattens
+    * the rope and the following ones read the cached String.
+    * */
+    @Override
+    public char charAt(int index) {
+        if(index < 0 || index >= length) {
+            throw new StringIndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    /*
+    * Flattens the tree: the leaves are copied, left to right, into one char array of exactly
+    * the right size.
+    * */
+    @Override
+    public String toString() {
+        String text = flat;
+        if(text != null) {
+            return text;
+        }
+        if(leaf != null) {
+            return flat = leaf;
+        }
+
+        StringBuilder sb = new StringBuilder(length);
+        Deque<Rope> pending = new ArrayDeque<>();
+        pending.push(this);
+        while(!pending.isEmpty()) {
+            Rope node = pending.pop();
+            if(node.flat != null) {
+                sb.append(node.flat);
+            } else if(node.leaf != null) {
+                sb.append(node.leaf);
+            } else {
+                pending.push(node.right);
+                pending.push(node.left);
+            }
+        }
+        return flat = sb.toString();
+    }
+}
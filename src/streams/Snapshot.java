@@ -0,0 +1,393 @@
+package streams;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+public class Snapshot<T> {
+
+    /*
+    * A compact, versioned binary snapshot of a list of records (Cat's or Person's), so a
+    * batch job can skip re-parsing the text file on every run.
+    *
+    * File layout (big-endian, like DataOutputStream):
+    *
+    *   header (64 bytes)
+    *     int   magic            'JSNP'
+    *     short version          FORMAT_VERSION
+    *     byte  record type      see Codec.type()
+    *     byte  (reserved)
+    *     long  record count
+    *     long  source size      size of the text file the snapshot was built from (-1 if none)
+    *     long  source modified  its last modified time in millis
+    *     long  index offset     where the index starts
+    *     int   crc32            checksum of everything after the header
+    *   data                     the records, one after the other, as written by the Codec
+    *   index                    count + 1 longs: where each record starts, relative to the data
+    *
+    * The reader memory-maps the file, so opening a snapshot is almost free: nothing is read
+    * until a record is asked for. get(i) decodes one record, record(i) and field(i, f) return
+    * read-only views of the mapped bytes without copying anything ("zero-copy").
+    *
+    * A single mapping can't be bigger than 2GB, so the file is mapped in SEGMENT_SIZE pieces.
+    * Every piece overlaps the next one by more than the biggest possible record, so any record
+    * (or index entry) is always inside the piece where it starts.
+    *
+    * The mappings stay valid after the file is closed, so a Snapshot doesn't need closing.
+    * */
+
+    static final int MAGIC = 0x4A534E50; // JSNP
+    static final short FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 64;
+
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int MAX_FIELD_LENGTH = 0xFFFF;
+    private static final int SEGMENT_OVERLAP = 4 * (MAX_FIELD_LENGTH + 8);
+
+    public static final Codec<Cat> CATS = new CatCodec();
+    public static final Codec<Person> PERSONS = new PersonCodec();
+
+    private final Codec<T> codec;
+    private final MappedByteBuffer[] segments;
+    private final int size;
+    private final long sourceSize;
+    private final long sourceModified;
+    private final long dataStart = HEADER_SIZE;
+    private final long indexOffset;
+
+    private Snapshot(Codec<T> codec, MappedByteBuffer[] segments, int size,
+                     long sourceSize, long sourceModified, long indexOffset) {
+        this.codec = codec;
+        this.segments = segments;
+        this.size = size;
+        this.sourceSize = sourceSize;
+        this.sourceModified = sourceModified;
+        this.indexOffset = indexOffset;
+    }
+
+    /*
+    * ===== Writing ======
+    * The snapshot is written to a temporary file next to the target and then moved over it,
+    * so a reader never sees a half written snapshot.
+    * */
+    public static <T> void write(Path snapshot, Path source, List<T> records, Codec<T> codec) throws IOException {
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            channel.position(HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            OutputStream channelOut = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(
+                    new CheckedOutputStream(new BufferedOutputStream(channelOut, 1 << 16), crc));
+
+            long[] offsets = new long[records.size() + 1];
+            long position = 0;
+            for(int i = 0; i < records.size(); i++) {
+                offsets[i] = position;
+                position += codec.write(records.get(i), out);
+            }
+            offsets[records.size()] = position;
+            for(long offset : offsets) {
+                out.writeLong(offset);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC)
+                    .putShort(FORMAT_VERSION)
+                    .put(codec.type())
+                    .put((byte) 0)
+                    .putLong(records.size())
+                    .putLong(source == null ? -1 : Files.size(source))
+                    .putLong(source == null ? -1 : Files.getLastModifiedTime(source).toMillis())
+                    .putLong(HEADER_SIZE + position)
+                    .putInt((int) crc.getValue());
+            header.clear();
+            channel.write(header, 0);
+            channel.force(false);
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+    * ===== Reading ======
+    * open() checks the header and, when verify is true, the crc32 of the whole file (CRC32
+    * runs straight over the mapped memory so this is still much faster than parsing text).
+    * */
+    public static <T> Snapshot<T> open(Path snapshot, Codec<T> codec) throws IOException {
+        return open(snapshot, codec, true);
+    }
+
+    public static <T> Snapshot<T> open(Path snapshot, Codec<T> codec, boolean verify) throws IOException {
+        try(FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if(fileSize < HEADER_SIZE) {
+                throw new IOException(snapshot + " is not a snapshot (too small)");
+            }
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((fileSize - 1) / SEGMENT_SIZE) + 1];
+            for(int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_SIZE;
+                long length = Math.min(SEGMENT_SIZE + SEGMENT_OVERLAP, fileSize - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+
+            ByteBuffer header = segments[0];
+            if(header.getInt(0) != MAGIC) {
+                throw new IOException(snapshot + " is not a snapshot (bad magic number)");
+            }
+            if(header.getShort(4) != FORMAT_VERSION) {
+                throw new IOException(snapshot + " has format version " + header.getShort(4)
+                        + ", expected " + FORMAT_VERSION);
+            }
+            if(header.get(6) != codec.type()) {
+                throw new IOException(snapshot + " holds record type " + header.get(6)
+                        + ", expected " + codec.type());
+            }
+
+            long count = header.getLong(8);
+            long indexOffset = header.getLong(32);
+            if(count < 0 || count >= Integer.MAX_VALUE
+                    || indexOffset < HEADER_SIZE || indexOffset + (count + 1) * Long.BYTES != fileSize) {
+                throw new IOException(snapshot + " is truncated or corrupt");
+            }
+
+            if(verify) {
+                CRC32 crc = new CRC32();
+                for(int i = 0; i < segments.length; i++) {
+                    long start = Math.max(i * SEGMENT_SIZE, HEADER_SIZE);
+                    long end = Math.min((i + 1) * SEGMENT_SIZE, fileSize);
+                    crc.update(segments[i].slice((int) (start - i * SEGMENT_SIZE), (int) (end - start)));
+                }
+                if((int) crc.getValue() != header.getInt(40)) {
+                    throw new IOException(snapshot + " failed checksum validation");
+                }
+            }
+
+            return new Snapshot<>(codec, segments, (int) count,
+                    header.getLong(16), header.getLong(24), indexOffset);
+        }
+    }
+
+    /*
+    * A snapshot is fresh when it was built from a source file that still has the same size
+    * and last modified time.
+    * */
+    public boolean isFreshFor(Path source) {
+        if(sourceSize < 0) {
+            return true; // not built from a file
+        }
+        try {
+            return Files.size(source) == sourceSize
+                    && Files.getLastModifiedTime(source).toMillis() == sourceModified;
+        }catch(IOException ioe) {
+            return false;
+        }
+    }
+
+    /*
+    * Uses the snapshot when it is valid and fresh; otherwise parses the text file and
+    * (re)writes the snapshot for the next run. The List returned from a snapshot is a lazy,
+    * read-only view.
+    * */
+    public static <T> List<T> load(Path source, Path snapshot, Codec<T> codec,
+                                   Function<Path, List<T>> textParser) {
+        if(Files.exists(snapshot)) {
+            try {
+                Snapshot<T> existing = open(snapshot, codec);
+                if(existing.isFreshFor(source)) {
+                    return existing.asList();
+                }
+            }catch(IOException ioe) {
+                System.err.println("Ignoring snapshot: " + ioe.getMessage());
+            }
+        }
+
+        List<T> records = textParser.apply(source);
+        try {
+            write(snapshot, source, records, codec);
+        }catch(IOException ioe) {
+            ioe.printStackTrace();
+        }
+        return records;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public T get(int i) {
+        return codec.read(record(i));
+    }
+
+    /*
+    * Read-only view of the bytes of record i, straight from the mapped file.
+    * */
+    public ByteBuffer record(int i) {
+        if(i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Record " + i + " out of bounds for size " + size);
+        }
+        long start = readLong(indexOffset + (long) i * Long.BYTES);
+        long end = readLong(indexOffset + (long) (i + 1) * Long.BYTES);
+        return slice(dataStart + start, (int) (end - start));
+    }
+
+    /*
+    * Read-only view of one field of record i (see the Codec for the field numbers), e.g.
+    * the UTF-8 bytes of a Cat's color can be compared without creating a String.
+    * */
+    public ByteBuffer field(int i, int field) {
+        return codec.field(record(i), field);
+    }
+
+    public List<T> asList() {
+        return new SnapshotList();
+    }
+
+    public Stream<T> stream() {
+        return IntStream.range(0, size).mapToObj(this::get);
+    }
+
+    private long readLong(long position) {
+        int segment = (int) (position / SEGMENT_SIZE);
+        return segments[segment].getLong((int) (position - segment * SEGMENT_SIZE));
+    }
+
+    private ByteBuffer slice(long position, int length) {
+        int segment = (int) (position / SEGMENT_SIZE);
+        return segments[segment].slice((int) (position - segment * SEGMENT_SIZE), length);
+    }
+
+    private class SnapshotList extends AbstractList<T> implements RandomAccess {
+        @Override
+        public T get(int index) {
+            return Snapshot.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /*
+    * How one type of record is written and read. write() returns the number of bytes it
+    * wrote; read() and field() get a buffer holding exactly one record.
+    * */
+    public interface Codec<T> {
+        byte type();
+
+        int write(T record, DataOutput out) throws IOException;
+
+        T read(ByteBuffer record);
+
+        ByteBuffer field(ByteBuffer record, int field);
+    }
+
+    private static int writeString(String s, DataOutput out) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > MAX_FIELD_LENGTH) {
+            throw new IOException("Field longer than " + MAX_FIELD_LENGTH + " bytes: " + s);
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+        return Short.BYTES + bytes.length;
+    }
+
+    private static String readString(ByteBuffer record, int position) {
+        int length = record.getShort(position) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        record.get(position + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer stringField(ByteBuffer record, int position) {
+        return record.slice(position + Short.BYTES, record.getShort(position) & 0xFFFF);
+    }
+
+    /*
+    * Cat: name and color as length-prefixed UTF-8. Fields: 0 = name, 1 = color.
+    * */
+    private static class CatCodec implements Codec<Cat> {
+        @Override
+        public byte type() {
+            return 1;
+        }
+
+        @Override
+        public int write(Cat cat, DataOutput out) throws IOException {
+            return writeString(cat.getName(), out) + writeString(cat.getColor(), out);
+        }
+
+        @Override
+        public Cat read(ByteBuffer record) {
+            int colorAt = Short.BYTES + (record.getShort(0) & 0xFFFF);
+            return new Cat(readString(record, 0), readString(record, colorAt));
+        }
+
+        @Override
+        public ByteBuffer field(ByteBuffer record, int field) {
+            switch(field) {
+                case 0:
+                    return stringField(record, 0);
+                case 1:
+                    return stringField(record, Short.BYTES + (record.getShort(0) & 0xFFFF));
+                default:
+                    throw new IllegalArgumentException("Cat has no field " + field);
+            }
+        }
+    }
+
+    /*
+    * Person: age as an int then the name as length-prefixed UTF-8. Fields: 0 = age, 1 = name.
+    * */
+    private static class PersonCodec implements Codec<Person> {
+        @Override
+        public byte type() {
+            return 2;
+        }
+
+        @Override
+        public int write(Person person, DataOutput out) throws IOException {
+            out.writeInt(person.getAge());
+            return Integer.BYTES + writeString(person.getName(), out);
+        }
+
+        @Override
+        public Person read(ByteBuffer record) {
+            return new Person(readString(record, Integer.BYTES), record.getInt(0));
+        }
+
+        @Override
+        public ByteBuffer field(ByteBuffer record, int field) {
+            switch(field) {
+                case 0:
+                    return record.slice(0, Integer.BYTES);
+                case 1:
+                    return stringField(record, Integer.BYTES);
+                default:
+                    throw new IllegalArgumentException("Person has no field " + field);
+            }
+        }
+    }
+}
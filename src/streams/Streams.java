@@ -1,6 +1,8 @@
 package streams;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
@@ -83,6 +85,18 @@ public class Streams {
 
         System.out.println(name); // sean
 
+        /*
+        * Every s + c above copies the whole String built so far, which is O(n^2) for n
+        * tokens. A Rope concatenates without copying and only builds the String once.
+        * */
+
+        String name2 = Stream.of("s", "e", "a", "n")
+                .map(Rope::of)
+                .reduce(Rope.EMPTY, Rope::concat)
+                .toString();
+
+        System.out.println(name2); // sean
+
         Integer product = Stream.of(2,3,4)
                 .reduce(1, (a,b) -> a * b);
 
@@ -168,6 +182,17 @@ public class Streams {
 
         System.out.println(mapNum2);
 
+        /*
+        * Each merge above copies the whole String collected so far for the key. With lots of
+        * duplicate keys (or a parallel stream) ConcurrentCollectors.toMapJoining() is better:
+        * every key keeps a StringJoiner and the Strings are only built once at the end.
+        * */
+
+        Map<Integer, String> mapNum3 = Stream.of("cake", "biscuits", "apple tart")
+                .collect(ConcurrentCollectors.toMapJoining(str3 -> str3.length(), str3 -> str3, ","));
+
+        System.out.println(mapNum3);
+
     }
 
     public void groupBy() {
@@ -204,6 +229,20 @@ public class Streams {
 
         System.out.println(map2);
 
+        /*
+        * String::length returns an int, but groupingBy() needs a Function<T, Integer> so every
+        * key gets boxed. PrimitiveCollectors.groupingByInt() takes a ToIntFunction instead and
+        * keeps the keys as ints in an IntObjectMap.
+        * */
+
+        Stream<String> names3 = Stream.of("Joe", "Tom", "Tom", "Alan", "Peter");
+        IntObjectMap<Set<String>> map3 =
+                names3.collect(
+                        PrimitiveCollectors.groupingByInt(String::length, Collectors.toSet())
+                );
+
+        System.out.println(map3); // {3=[Joe, Tom], 4=[Alan], 5=[Peter]}
+
     }
 
     public void partitioningBy() {
@@ -232,6 +271,15 @@ public class Streams {
 
         System.out.println(map2);// {false=[Mike, Alan], true=[Thomas, Teresa, Peter}}
 
+        // only 2 groups, so PrimitiveCollectors.partitioningBy() keeps them in a two-slot array
+        Stream<String> names3 = Stream.of("Thomas", "Teresa", "Mike", "Alan", "Peter");
+        PrimitiveCollectors.Partition<Long> counts =
+                names3.collect(
+                        PrimitiveCollectors.partitioningBy(s3 -> s3.length() > 4, Collectors.counting())
+                );
+
+        System.out.println(counts.get(true)); // 3
+
     }
 
     public static void main(String[] args) {
@@ -345,6 +393,11 @@ public class Streams {
                 .sorted(Comparator.comparing(p -> p.getAge()))
                 .forEach(System.out::println);
 
+        // ages are small ints: IntKeySorter sorts by them without boxing or comparisons (stable)
+        Stream.of(mary, john)
+                .collect(IntKeySorter.sortingBy(Person::getAge))
+                .forEach(System.out::println);
+
         Stream.of("Tim", "Jim", "Peter", "Ann", "Mary")
                 .peek(name -> System.out.println(" 0." + name)) // Tim, Jim, Peter, Ann, Mary
                 .filter(name -> name.length() == 3)
@@ -402,4 +455,47 @@ public class Streams {
 
     }
 
+    public static Stream<Cat> streamCats(String fileName) throws IOException {
+        /*
+        * Lazy version of loadCats(): Cat's are parsed as the pipeline asks for them, so
+        * the whole file never has to fit in memory. Like Files.lines(), the stream holds an
+        * open file and must be closed, the easiest way being try-with-resources:
+        *
+        *   try(Stream<Cat> cats = Streams.streamCats("Cats.txt")) {
+        *       Map<String, Long> byColor = cats.parallel()
+        *               .collect(Collectors.groupingBy(Cat::getColor, Collectors.counting()));
+        *   }
+        * */
+        BufferedReader reader = Files.newBufferedReader(Paths.get(fileName));
+        CatSpliterator spliterator = new CatSpliterator(reader, (lineNumber, line) ->
+                System.err.println("Malformed cat on line " + lineNumber + ": '" + line + "'"));
+
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    }catch(IOException ioe) {
+                        throw new UncheckedIOException(ioe);
+                    }
+                });
+    }
+
+    public static List<Cat> loadCats(String fileName, String snapshotName) {
+        /*
+        * Reads the binary snapshot when it is still fresh for fileName, otherwise parses
+        * fileName and writes the snapshot for next time. See Snapshot.
+        * */
+        return Snapshot.load(Paths.get(fileName), Paths.get(snapshotName), Snapshot.CATS,
+                path -> MappedCatLoader.load(path.toString()));
+    }
+
+    public static List<Cat> loadCatsMapped(String fileName) {
+        /*
+        * Same result as loadCats() but the file is memory-mapped and parsed on all cores,
+        * malformed lines are reported instead of throwing ArrayIndexOutOfBoundsException.
+        * See MappedCatLoader.
+        * */
+        return MappedCatLoader.load(fileName);
+    }
+
 }